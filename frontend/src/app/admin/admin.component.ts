@@ -4,6 +4,7 @@ import { HttpClient } from "@angular/common/http";
 import { MatTabGroup } from "@angular/material/tabs";
 import { MatTableDataSource } from "@angular/material/table";
 import { MatPaginator } from "@angular/material/paginator";
+import { OrderService } from "../main/services/order.service";
 
 @Component({
     selector: 'app-admin',
@@ -11,32 +12,49 @@ import { MatPaginator } from "@angular/material/paginator";
     styleUrls: ['./admin.component.css']
 })
 export class AdminComponent implements AfterViewInit {
+    private static readonly ORDERS_TAB: number = 1;
+
     @ViewChild(MatTabGroup) tabs: MatTabGroup;
     @ViewChild(MatPaginator) paginator: MatPaginator;
 
     dataSource: MatTableDataSource<any>[] = new Array(2);
-    apiUrls: string[] = [ApiUrls.users, ApiUrls.orders];
+    apiUrls: string[] = [ApiUrls.users];
     displayedColumns: string[][] = [
         ['id', 'name', 'surname', 'email', 'address', 'roles', 'edit-remove'],
         ['id', 'buyer', 'items', 'deliveryAddress', 'paymentMethod', 'status', 'cost', 'time', 'information']
     ];
 
-    constructor(private httpClient: HttpClient) {
+    constructor(private httpClient: HttpClient, private orderService: OrderService) {
     }
 
     ngAfterViewInit(): void {
         this.tabs.focusChange.subscribe(event => {
             const tabIndex = event.index;
-            if (this.dataSource[tabIndex] == null) {
+            if (tabIndex === AdminComponent.ORDERS_TAB) {
+                this.paginator.pageIndex = 0;
+                this.loadOrderPage();
+            } else if (this.dataSource[tabIndex] == null) {
                 this.httpClient.get(this.apiUrls[tabIndex])
                     .subscribe((response: any[]) => this.addDataSource(tabIndex, response));
             } else {
                 this.dataSource[tabIndex].filter = null;
             }
         });
+        this.paginator.page.subscribe(() => {
+            if (this.tabs.selectedIndex === AdminComponent.ORDERS_TAB) this.loadOrderPage();
+        });
         this.tabs._focusChanged(0);
     }
 
+    // orders are paged by the server, so the paginator is not attached to their data source
+    loadOrderPage(): void {
+        this.orderService.getOrderPage(this.paginator.pageIndex, this.paginator.pageSize)
+            .subscribe(page => {
+                this.dataSource[AdminComponent.ORDERS_TAB] = new MatTableDataSource<any>(page.orders);
+                this.paginator.length = page.totalCount;
+            });
+    }
+
     addDataSource<T>(index: number, response: T[]): void {
         this.dataSource[index] = new MatTableDataSource<T>(response);
         this.dataSource[index].paginator = this.paginator;
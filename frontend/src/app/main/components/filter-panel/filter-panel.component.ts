@@ -1,5 +1,6 @@
-import { Component, EventEmitter, OnInit, Output } from '@angular/core';
+import { Component, EventEmitter, Input, OnInit, Output } from '@angular/core';
 import { FormBuilder, FormControl, FormGroup, Validators } from "@angular/forms";
+import { ProductFacets } from "../../models/product-facets";
 import { Validator } from "../../util/validator";
 
 @Component({
@@ -9,6 +10,7 @@ import { Validator } from "../../util/validator";
 })
 export class FilterPanelComponent implements OnInit {
     form: FormGroup;
+    @Input() facets: ProductFacets;
     @Output() onFilter: EventEmitter<object> = new EventEmitter<object>();
 
     readonly errorMessages: object = {
@@ -1,9 +1,11 @@
+import Big from "big.js";
 import { Product } from "./product";
 
 export class OrderItem {
     id: number;
     product: Product;
     quantity: number;
+    readonly unitPrice: Big;
 
     constructor(product: Product, quantity: number) {
         this.product = product;
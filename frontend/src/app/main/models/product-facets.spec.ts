@@ -0,0 +1,7 @@
+import { ProductFacets } from './product-facets';
+
+describe('ProductFacets', () => {
+    it('should create an instance', () => {
+        expect(new ProductFacets()).toBeTruthy();
+    });
+});
@@ -0,0 +1,15 @@
+import Big from "big.js";
+
+export class PriceBucket {
+    from: Big;
+    to: Big;
+    count: number;
+}
+
+export class ProductFacets {
+    minPrice: Big;
+    maxPrice: Big;
+    inStock: number;
+    outOfStock: number;
+    priceHistogram: PriceBucket[];
+}
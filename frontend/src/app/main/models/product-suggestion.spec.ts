@@ -0,0 +1,7 @@
+import { ProductSuggestion } from './product-suggestion';
+
+describe('ProductSuggestion', () => {
+    it('should create an instance', () => {
+        expect(new ProductSuggestion()).toBeTruthy();
+    });
+});
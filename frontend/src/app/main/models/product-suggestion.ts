@@ -0,0 +1,4 @@
+export class ProductSuggestion {
+    id: number;
+    name: string;
+}
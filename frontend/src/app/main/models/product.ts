@@ -7,4 +7,5 @@ export class Product {
     images: string[];
     price: Big;
     quantity: number;
+    version: number;
 }
\ No newline at end of file
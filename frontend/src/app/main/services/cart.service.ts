@@ -31,6 +31,14 @@ export class CartService {
                    .toNumber();
     }
 
+    refreshProducts(products: Product[]): void {
+        let cartContent = this.getCartProducts()
+                              .map(item => ({item: item, product: products.find(product => product.id === item.product.id)}))
+                              .filter(entry => entry.product !== undefined)
+                              .map(entry => new OrderItem(entry.product, entry.item.quantity));
+        sessionStorage.setItem('cart', JSON.stringify(cartContent));
+    }
+
     clearCart(): void {
         sessionStorage.removeItem('cart');
     }
@@ -1,6 +1,7 @@
-import { HttpClient } from "@angular/common/http";
+import { HttpClient, HttpParams } from "@angular/common/http";
 import { Injectable } from '@angular/core';
 import { Observable } from "rxjs";
+import { map } from "rxjs/operators";
 import { Order } from "../models/order";
 import { OrderStatus } from "../models/order-status.enum";
 import { ApiUrls } from "../util/api-urls";
@@ -13,6 +14,13 @@ export class OrderService {
     constructor(private http: HttpClient) {
     }
 
+    getOrderPage(page: number, size: number): Observable<{ orders: Order[], totalCount: number }> {
+        let httpParams = new HttpParams().append("page", String(page)).append("size", String(size));
+
+        return this.http.get<Order[]>(ApiUrls.orders, {params: httpParams, observe: 'response'})
+                   .pipe(map(response => ({orders: response.body, totalCount: Number(response.headers.get("X-Total-Count"))})));
+    }
+
     getOrdersByUserId(id: number): Observable<Order[]> {
         return this.http.get<Order[]>(ApiUrls.ordersForBuyer(id));
     }
@@ -1,6 +1,9 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpParams } from "@angular/common/http";
+import { map } from "rxjs/operators";
 import { Product } from "../models/product";
+import { ProductFacets } from "../models/product-facets";
+import { ProductSuggestion } from "../models/product-suggestion";
 import { Observable } from "rxjs";
 import { ApiUrls } from "../util/api-urls";
 
@@ -22,6 +25,38 @@ export class ProductService {
         return this.http.get<Product[]>(ApiUrls.products, {params: httpParams});
     }
 
+    getProductsWithFacets(filters: object): Observable<{ products: Product[], facets: ProductFacets }> {
+        let httpParams = new HttpParams().append("facets", "true");
+        for (let predicate of this.predicates) {
+            if (filters.hasOwnProperty(predicate)) httpParams = httpParams.append(predicate, filters[predicate]);
+        }
+
+        return this.http.get<{ products: Product[], facets: ProductFacets }>(ApiUrls.products, {params: httpParams});
+    }
+
+    getProductPage(filters: object, limit: number, after?: string): Observable<{ products: Product[], next: string }> {
+        let httpParams = new HttpParams().append("limit", String(limit));
+        for (let predicate of this.predicates.concat("sort")) {
+            if (filters.hasOwnProperty(predicate)) httpParams = httpParams.append(predicate, filters[predicate]);
+        }
+        if (after) httpParams = httpParams.append("after", after);
+
+        return this.http.get<Product[]>(ApiUrls.products, {params: httpParams, observe: 'response'})
+                   .pipe(map(response => ({products: response.body, next: response.headers.get("X-Next-Cursor")})));
+    }
+
+    getProductsByIds(ids: number[]): Observable<{ products: Product[], missingIds: number[] }> {
+        let httpParams = new HttpParams().append("ids", ids.join(","));
+
+        return this.http.get<{ products: Product[], missingIds: number[] }>(ApiUrls.productBatch, {params: httpParams});
+    }
+
+    suggestProducts(prefix: string, limit: number): Observable<ProductSuggestion[]> {
+        let httpParams = new HttpParams().append("prefix", prefix).append("limit", String(limit));
+
+        return this.http.get<ProductSuggestion[]>(ApiUrls.productSuggestions, {params: httpParams});
+    }
+
     addProduct(product: Product): Observable<Product> {
         return this.http.post<Product>(ApiUrls.products, product);
     }
@@ -29,6 +29,14 @@ export class ApiUrls {
         return this.BASE_URL + this.PRODUCTS;
     }
 
+    public static get productBatch(): string {
+        return this.BASE_URL + this.PRODUCTS + "/batch";
+    }
+
+    public static get productSuggestions(): string {
+        return this.BASE_URL + this.PRODUCTS + "/suggest";
+    }
+
     public static get orders(): string {
         return this.BASE_URL + this.ORDERS;
     }
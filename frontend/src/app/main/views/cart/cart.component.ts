@@ -1,6 +1,7 @@
 import { Component, OnInit } from '@angular/core';
 import { OrderItem } from "../../models/order-item";
 import { CartService } from "../../services/cart.service";
+import { ProductService } from "../../services/product.service";
 
 @Component({
     selector: 'app-cart',
@@ -12,12 +13,24 @@ export class CartComponent implements OnInit {
     cartValue: number;
     isCartValid: boolean = true;
 
-    constructor(private cartService: CartService) {
+    constructor(private cartService: CartService, private productService: ProductService) {
     }
 
     ngOnInit(): void {
         this.cartItems = this.cartService.getCartProducts();
         this.checkCartValidityAndCalculateValue();
+        this.refreshCartProducts();
+    }
+
+    refreshCartProducts(): void {
+        if (this.cartItems.length === 0) return;
+
+        this.productService.getProductsByIds(this.cartItems.map(item => item.product.id))
+            .subscribe(batch => {
+                this.cartService.refreshProducts(batch.products);
+                this.cartItems = this.cartService.getCartProducts();
+                this.checkCartValidityAndCalculateValue();
+            });
     }
 
     checkCartValidityAndCalculateValue(): void {
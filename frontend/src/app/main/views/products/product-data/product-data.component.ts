@@ -20,6 +20,7 @@ export class ProductDataComponent implements OnInit {
     ngOnInit(): void {
         this.productForm = this.builder.group({
             id: new FormControl(),
+            version: new FormControl(),
             name: new FormControl(null, Validators.required),
             description: new FormControl(),
             price: new FormControl(null, [Validators.required, Validators.min(0.01), Validator.price]),
@@ -1,30 +1,55 @@
 import { NoopScrollStrategy } from "@angular/cdk/overlay";
 import { HttpErrorResponse } from "@angular/common/http";
-import { Component, ElementRef, ViewChild } from '@angular/core';
+import { Component, ElementRef, OnDestroy, OnInit, ViewChild } from '@angular/core';
 import { MatDialog } from '@angular/material/dialog';
 import { MatPaginator, PageEvent } from '@angular/material/paginator';
 import { Product } from "../../models/product";
+import { ProductFacets } from "../../models/product-facets";
+import { ProductSuggestion } from "../../models/product-suggestion";
 import { ProductService } from "../../services/product.service";
 import { SnackbarService } from "../../services/snackbar.service";
 import { ProductDataComponent } from "./product-data/product-data.component";
 import { DialogDeleteComponent } from "../../../shared/components/dialog-delete.component";
 import { ProductDetailsComponent } from './product-details/product-details.component';
+import { of, Subject, Subscription } from "rxjs";
+import { debounceTime, distinctUntilChanged, switchMap } from "rxjs/operators";
 
 @Component({
     selector: 'app-products',
     templateUrl: './products.component.html',
     styleUrls: ['./products.component.css']
 })
-export class ProductsComponent {
+export class ProductsComponent implements OnInit, OnDestroy {
     allProducts: Product[] = [];
     paginated: Product[] = [];
+    facets: ProductFacets;
+    suggestions: ProductSuggestion[] = [];
     isLoading: boolean = false;
     @ViewChild(MatPaginator, {static: false}) paginator: MatPaginator;
     @ViewChild('search_box', {static: false}) searchBox: ElementRef;
 
+    private readonly typedPrefixes = new Subject<string>();
+    private suggestionSubscription: Subscription;
+
     constructor(private productService: ProductService, private dialog: MatDialog, private snackBar: SnackbarService) {
     }
 
+    ngOnInit(): void {
+        this.suggestionSubscription = this.typedPrefixes
+            .pipe(debounceTime(100),
+                  distinctUntilChanged(),
+                  switchMap(prefix => prefix.trim() === '' ? of([]) : this.productService.suggestProducts(prefix, 10)))
+            .subscribe(suggestions => this.suggestions = suggestions, () => this.suggestions = []);
+    }
+
+    ngOnDestroy(): void {
+        this.suggestionSubscription.unsubscribe();
+    }
+
+    suggestProducts(prefix: string): void {
+        this.typedPrefixes.next(prefix);
+    }
+
     onPageChange(event: PageEvent): void {
         let start: number = event.pageIndex * event.pageSize;
         let end: number = start + event.pageSize;
@@ -39,9 +64,10 @@ export class ProductsComponent {
         }
         this.isLoading = true;
 
-        this.productService.getProducts(filters)
+        this.productService.getProductsWithFacets(filters)
             .subscribe(response => {
-                this.allProducts = response;
+                this.allProducts = response.products;
+                this.facets = response.facets;
                 this.paginated = this.allProducts;
                 this.paginator.length = this.paginated.length;
                 this.isLoading = false;
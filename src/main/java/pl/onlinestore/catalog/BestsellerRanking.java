@@ -0,0 +1,220 @@
+package pl.onlinestore.catalog;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.onlinestore.model.enums.SalesWindow;
+
+@Component
+public class BestsellerRanking {
+
+    private static final int HOURS_KEPT = SalesWindow.WEEK.getHours();
+
+    private static final String SELECT_SALES =
+        "SELECT product_id, sold_hour, SUM(quantity) FROM product_sales WHERE sold_hour > ? GROUP BY product_id, sold_hour";
+    private static final String INSERT_SALES = "INSERT INTO product_sales (product_id, sold_hour, quantity) VALUES (?, ?, ?)";
+    private static final String DELETE_EXPIRED_SALES = "DELETE FROM product_sales WHERE sold_hour <= ?";
+    private static final String DELETE_PRODUCT_SALES = "DELETE FROM product_sales WHERE product_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentMap<Long, HourlySales> sales = new ConcurrentHashMap<>();
+    private final ReadWriteLock unsavedLock = new ReentrantReadWriteLock();
+    private ConcurrentMap<SalesBucket, LongAdder> unsaved = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BestsellerRanking(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        long currentHour = currentHour();
+        sales.clear();
+        jdbcTemplate.query(SELECT_SALES, row -> {
+            record(row.getLong(1), row.getLong(2), row.getLong(3));
+        }, currentHour - HOURS_KEPT);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        long hour = currentHour();
+        unsavedLock.readLock().lock();
+        try {
+            event.getQuantities().forEach((productId, quantity) -> {
+                record(productId, hour, quantity);
+                unsaved.computeIfAbsent(new SalesBucket(productId, hour), bucket -> new LongAdder()).add(quantity);
+            });
+        } finally {
+            unsavedLock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            sales.remove(event.getProductId());
+            unsavedLock.readLock().lock();
+            try {
+                unsaved.keySet().removeIf(bucket -> bucket.productId == event.getProductId());
+            } finally {
+                unsavedLock.readLock().unlock();
+            }
+            jdbcTemplate.update(DELETE_PRODUCT_SALES, event.getProductId());
+        }
+    }
+
+    /**
+     * Appends quantities sold since the previous call to the database and removes the ones older than the longest window.
+     */
+    @Scheduled(fixedDelayString = "${product.bestsellers.flush-interval:PT1M}")
+    @PreDestroy
+    public void flush() {
+        ConcurrentMap<SalesBucket, LongAdder> flushed;
+        unsavedLock.writeLock().lock();
+        try {
+            flushed = unsaved;
+            unsaved = new ConcurrentHashMap<>();
+        } finally {
+            unsavedLock.writeLock().unlock();
+        }
+
+        List<Object[]> rows = new ArrayList<>(flushed.size());
+        flushed.forEach((bucket, quantity) -> rows.add(new Object[]{bucket.productId, bucket.hour, quantity.sum()}));
+
+        try {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SALES, rows);
+            }
+        } catch (RuntimeException e) {
+            unsavedLock.readLock().lock();
+            try {
+                flushed.forEach((bucket, quantity) ->
+                                    unsaved.computeIfAbsent(bucket, key -> new LongAdder()).add(quantity.sum()));
+            } finally {
+                unsavedLock.readLock().unlock();
+            }
+            throw e;
+        }
+        jdbcTemplate.update(DELETE_EXPIRED_SALES, currentHour() - HOURS_KEPT);
+    }
+
+    /**
+     * Returns ids of at most {@code limit} products sold the most within given window, mapped to their sold quantity,
+     * from the best-selling one.
+     */
+    public Map<Long, Long> top(SalesWindow window, int limit) {
+        Comparator<Map.Entry<Long, Long>> ranking =
+            Map.Entry.<Long, Long>comparingByValue().thenComparing(Map.Entry.<Long, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Long>> best = new PriorityQueue<>(limit + 1, ranking);
+        long currentHour = currentHour();
+
+        sales.forEach((productId, productSales) -> {
+            long sold = productSales.sum(currentHour, window.getHours());
+            if (sold > 0) {
+                best.offer(new SimpleImmutableEntry<>(productId, sold));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        });
+
+        List<Map.Entry<Long, Long>> ranked = new ArrayList<>(best);
+        ranked.sort(ranking.reversed());
+
+        Map<Long, Long> result = new LinkedHashMap<>();
+        ranked.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+
+    private void record(long productId, long hour, long quantity) {
+        sales.computeIfAbsent(productId, id -> new HourlySales(hour)).add(hour, quantity);
+    }
+
+    private static long currentHour() {
+        return TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis());
+    }
+
+    /**
+     * Ring buffer of quantities sold in each of the last {@link #HOURS_KEPT} hours.
+     */
+    private static class HourlySales {
+
+        private final long[] quantities = new long[HOURS_KEPT];
+        private long latestHour;
+
+        HourlySales(long hour) {
+            this.latestHour = hour;
+        }
+
+        synchronized void add(long hour, long quantity) {
+            if (hour > latestHour) {
+                for (long cleared = Math.max(latestHour + 1, hour - HOURS_KEPT + 1); cleared <= hour; cleared++) {
+                    quantities[index(cleared)] = 0;
+                }
+                latestHour = hour;
+            } else if (hour <= latestHour - HOURS_KEPT) {
+                return;
+            }
+            quantities[index(hour)] += quantity;
+        }
+
+        synchronized long sum(long currentHour, int hours) {
+            long sum = 0;
+            long from = Math.max(currentHour - hours + 1, latestHour - HOURS_KEPT + 1);
+            for (long hour = from; hour <= Math.min(currentHour, latestHour); hour++) {
+                sum += quantities[index(hour)];
+            }
+            return sum;
+        }
+
+        private static int index(long hour) {
+            return (int) Math.floorMod(hour, (long) HOURS_KEPT);
+        }
+    }
+
+    private static class SalesBucket {
+
+        private final long productId;
+        private final long hour;
+
+        SalesBucket(long productId, long hour) {
+            this.productId = productId;
+            this.hour = hour;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SalesBucket)) {
+                return false;
+            }
+            SalesBucket that = (SalesBucket) o;
+            return productId == that.productId && hour == that.hour;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(productId, hour);
+        }
+    }
+}
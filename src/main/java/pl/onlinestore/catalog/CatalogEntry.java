@@ -0,0 +1,65 @@
+package pl.onlinestore.catalog;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.math.BigDecimal;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.util.ProductCard;
+
+public final class CatalogEntry extends JsonSerializable.Base {
+
+    private final long id;
+    private final String name;
+    private final BigDecimal price;
+    private final int quantity;
+    private final String image;
+    private final String json;
+
+    CatalogEntry(Product product, String json) {
+        this.id = product.getId();
+        this.name = product.getName();
+        this.price = product.getPrice();
+        this.quantity = product.getQuantity();
+        this.image = product.getImages() == null || product.getImages().isEmpty() ? null
+                                                                                   : product.getImages().iterator().next();
+        this.json = json;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public ProductCard toCard() {
+        return new ProductCard(id, name, price, image);
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer)
+        throws IOException {
+        serialize(generator, serializers);
+    }
+}
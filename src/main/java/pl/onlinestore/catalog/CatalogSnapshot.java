@@ -0,0 +1,272 @@
+package pl.onlinestore.catalog;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.util.ProductCursor;
+import pl.onlinestore.util.ProductFacets;
+import pl.onlinestore.util.ProductPage;
+
+public final class CatalogSnapshot {
+
+    private static final Comparator<CatalogEntry> BY_ID = Comparator.comparingLong(CatalogEntry::getId);
+    private static final Comparator<CatalogEntry> BY_PRICE = Comparator.comparing(CatalogEntry::getPrice).thenComparing(BY_ID);
+    private static final Comparator<CatalogEntry> BY_NAME = Comparator.comparing(CatalogEntry::getName).thenComparing(BY_ID);
+
+    private final long version;
+    private final CatalogEntry[] entries;
+    private final int[] byPrice;
+    private final int[] byName;
+
+    private CatalogSnapshot(long version, CatalogEntry[] entriesSortedById) {
+        this(version, entriesSortedById, order(entriesSortedById, BY_PRICE), order(entriesSortedById, BY_NAME));
+    }
+
+    private CatalogSnapshot(long version, CatalogEntry[] entriesSortedById, int[] byPrice, int[] byName) {
+        this.version = version;
+        this.entries = entriesSortedById;
+        this.byPrice = byPrice;
+        this.byName = byName;
+    }
+
+    public static CatalogSnapshot of(long version, List<CatalogEntry> entries) {
+        CatalogEntry[] sorted = entries.toArray(new CatalogEntry[0]);
+        Arrays.sort(sorted, BY_ID);
+        return new CatalogSnapshot(version, sorted);
+    }
+
+    /**
+     * Returns the snapshot with given entry added or replaced. The sorted orders are patched by binary search instead
+     * of being sorted again, and are shared with this snapshot when the entry keeps its price or name.
+     */
+    public CatalogSnapshot with(CatalogEntry entry) {
+        int index = indexOf(entry.getId());
+
+        if (index >= 0) {
+            CatalogEntry[] copy = entries.clone();
+            copy[index] = entry;
+            return new CatalogSnapshot(version + 1, copy, replaced(byPrice, index, copy, BY_PRICE),
+                                       replaced(byName, index, copy, BY_NAME));
+        }
+
+        int insertionPoint = -index - 1;
+        CatalogEntry[] copy = new CatalogEntry[entries.length + 1];
+        System.arraycopy(entries, 0, copy, 0, insertionPoint);
+        copy[insertionPoint] = entry;
+        System.arraycopy(entries, insertionPoint, copy, insertionPoint + 1, entries.length - insertionPoint);
+        return new CatalogSnapshot(version + 1, copy, inserted(byPrice, insertionPoint, copy, BY_PRICE),
+                                   inserted(byName, insertionPoint, copy, BY_NAME));
+    }
+
+    /**
+     * Returns the snapshot with given entries added or replaced, merged in one pass over the current ones.
+     */
+    public CatalogSnapshot with(List<CatalogEntry> added) {
+        CatalogEntry[] sortedAdded = added.toArray(new CatalogEntry[0]);
+        Arrays.sort(sortedAdded, BY_ID);
+        List<CatalogEntry> merged = new ArrayList<>(entries.length + sortedAdded.length);
+        int position = 0;
+
+        for (CatalogEntry entry : sortedAdded) {
+            while (position < entries.length && entries[position].getId() < entry.getId()) {
+                merged.add(entries[position++]);
+            }
+            if (position < entries.length && entries[position].getId() == entry.getId()) {
+                position++;
+            }
+            merged.add(entry);
+        }
+        while (position < entries.length) {
+            merged.add(entries[position++]);
+        }
+        return new CatalogSnapshot(version + 1, merged.toArray(new CatalogEntry[0]));
+    }
+
+    public CatalogSnapshot without(long id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return this;
+        }
+
+        CatalogEntry[] copy = new CatalogEntry[entries.length - 1];
+        System.arraycopy(entries, 0, copy, 0, index);
+        System.arraycopy(entries, index + 1, copy, index, entries.length - index - 1);
+        return new CatalogSnapshot(version + 1, copy, removed(byPrice, index, BY_PRICE), removed(byName, index, BY_NAME));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public CatalogEntry findById(long id) {
+        int index = indexOf(id);
+        return index >= 0 ? entries[index] : null;
+    }
+
+    public ProductPage<CatalogEntry> list(Predicate<CatalogEntry> filter, ProductSort sort, ProductCursor after, int limit) {
+        int[] order = sort == ProductSort.PRICE ? byPrice : sort == ProductSort.NAME ? byName : null;
+        int start = after == null ? 0 : firstAfter(order, after);
+
+        List<CatalogEntry> page = new ArrayList<>();
+        boolean hasNext = false;
+        for (int position = start; position < entries.length; position++) {
+            CatalogEntry entry = entries[order == null ? position : order[position]];
+            if (filter.test(entry)) {
+                if (page.size() == limit) {
+                    hasNext = true;
+                    break;
+                }
+                page.add(entry);
+            }
+        }
+
+        ProductCursor nextCursor = null;
+        if (hasNext) {
+            CatalogEntry last = page.get(page.size() - 1);
+            nextCursor = ProductCursor.after(last.getId(), last.getPrice(), last.getName(), sort);
+        }
+        return new ProductPage<>(page, nextCursor);
+    }
+
+    public ProductFacets facets(Predicate<CatalogEntry> filter) {
+        ProductFacets.Builder facets = ProductFacets.builder();
+        for (CatalogEntry entry : entries) {
+            if (filter.test(entry)) {
+                facets.add(entry.getPrice(), entry.getQuantity());
+            }
+        }
+        return facets.build();
+    }
+
+    private int firstAfter(int[] order, ProductCursor after) {
+        int low = 0;
+        int high = entries.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            CatalogEntry entry = entries[order == null ? middle : order[middle]];
+            if (compareToCursor(entry, after) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compareToCursor(CatalogEntry entry, ProductCursor cursor) {
+        int result = 0;
+        if (cursor.getSort() == ProductSort.PRICE) {
+            result = entry.getPrice().compareTo((BigDecimal) cursor.getValue());
+        } else if (cursor.getSort() == ProductSort.NAME) {
+            result = entry.getName().compareTo((String) cursor.getValue());
+        }
+        return result != 0 ? result : Long.compare(entry.getId(), cursor.getId());
+    }
+
+    private int indexOf(long id) {
+        int low = 0;
+        int high = entries.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = entries[middle].getId();
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the order with the entry at given index, replaced in {@code changed}, moved to its new position, or the
+     * same order if the entry keeps its position.
+     */
+    private int[] replaced(int[] order, int index, CatalogEntry[] changed, Comparator<CatalogEntry> comparator) {
+        if (comparator.compare(entries[index], changed[index]) == 0) {
+            return order;
+        }
+
+        int from = search(order, order.length, entries, entries[index], comparator);
+        int[] copy = new int[order.length];
+        System.arraycopy(order, 0, copy, 0, from);
+        System.arraycopy(order, from + 1, copy, from, order.length - from - 1);
+
+        int to = -search(copy, copy.length - 1, changed, changed[index], comparator) - 1;
+        System.arraycopy(copy, to, copy, to + 1, copy.length - 1 - to);
+        copy[to] = index;
+        return copy;
+    }
+
+    /**
+     * Returns the order with the entry inserted at given index of {@code extended}, shifting indexes of the following
+     * entries.
+     */
+    private int[] inserted(int[] order, int index, CatalogEntry[] extended, Comparator<CatalogEntry> comparator) {
+        int to = -search(order, order.length, entries, extended[index], comparator) - 1;
+        int[] copy = new int[order.length + 1];
+        for (int position = 0; position < order.length; position++) {
+            int entryIndex = order[position] >= index ? order[position] + 1 : order[position];
+            copy[position < to ? position : position + 1] = entryIndex;
+        }
+        copy[to] = index;
+        return copy;
+    }
+
+    /**
+     * Returns the order without the entry at given index, shifting indexes of the following entries.
+     */
+    private int[] removed(int[] order, int index, Comparator<CatalogEntry> comparator) {
+        int from = search(order, order.length, entries, entries[index], comparator);
+        int[] copy = new int[order.length - 1];
+        for (int position = 0; position < copy.length; position++) {
+            int entryIndex = order[position < from ? position : position + 1];
+            copy[position] = entryIndex > index ? entryIndex - 1 : entryIndex;
+        }
+        return copy;
+    }
+
+    /**
+     * Finds the key in the first {@code length} positions of the order of given entries, like
+     * {@link Arrays#binarySearch}.
+     */
+    private static int search(int[] order, int length, CatalogEntry[] entries, CatalogEntry key,
+                              Comparator<CatalogEntry> comparator) {
+        int low = 0;
+        int high = length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = comparator.compare(entries[order[middle]], key);
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int[] order(CatalogEntry[] entries, Comparator<CatalogEntry> comparator) {
+        return IntStream.range(0, entries.length)
+                        .boxed()
+                        .sorted((first, second) -> comparator.compare(entries[first], entries[second]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+    }
+}
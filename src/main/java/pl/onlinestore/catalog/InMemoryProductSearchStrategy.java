@@ -0,0 +1,17 @@
+package pl.onlinestore.catalog;
+
+import java.util.List;
+
+public class InMemoryProductSearchStrategy implements ProductSearchStrategy {
+
+    private final ProductTextIndex textIndex;
+
+    public InMemoryProductSearchStrategy(ProductTextIndex textIndex) {
+        this.textIndex = textIndex;
+    }
+
+    @Override
+    public List<Long> search(String query, int limit) {
+        return textIndex.rank(query, limit);
+    }
+}
@@ -0,0 +1,19 @@
+package pl.onlinestore.catalog;
+
+import java.util.Set;
+
+public class OrderDeletedEvent {
+
+    private final Set<Long> productIds;
+
+    public OrderDeletedEvent(Set<Long> productIds) {
+        this.productIds = productIds;
+    }
+
+    /**
+     * Returns ids of the products ordered in the deleted order.
+     */
+    public Set<Long> getProductIds() {
+        return productIds;
+    }
+}
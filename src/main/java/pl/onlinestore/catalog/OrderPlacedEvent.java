@@ -0,0 +1,19 @@
+package pl.onlinestore.catalog;
+
+import java.util.Map;
+
+public class OrderPlacedEvent {
+
+    private final Map<Long, Integer> quantities;
+
+    public OrderPlacedEvent(Map<Long, Integer> quantities) {
+        this.quantities = quantities;
+    }
+
+    /**
+     * Returns ordered quantity of each product by its id.
+     */
+    public Map<Long, Integer> getQuantities() {
+        return quantities;
+    }
+}
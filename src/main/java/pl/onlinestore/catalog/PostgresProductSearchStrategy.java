@@ -0,0 +1,22 @@
+package pl.onlinestore.catalog;
+
+import java.util.List;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class PostgresProductSearchStrategy implements ProductSearchStrategy {
+
+    private static final String SEARCH_QUERY =
+        "SELECT p.id FROM product p, websearch_to_tsquery('simple', ?) query WHERE p.search_vector @@ query "
+        + "ORDER BY ts_rank(p.search_vector, query) DESC, p.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostgresProductSearchStrategy(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Long> search(String query, int limit) {
+        return jdbcTemplate.queryForList(SEARCH_QUERY, Long.class, query, limit);
+    }
+}
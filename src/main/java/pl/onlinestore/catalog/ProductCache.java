@@ -0,0 +1,143 @@
+package pl.onlinestore.catalog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.onlinestore.model.Product;
+
+/**
+ * Cache of products read by id. It keeps detached copies of the products and hands out a new copy on every read, so
+ * that neither changes made to a returned product nor the persistence context it is attached to are shared with other
+ * requests.
+ */
+@Component
+public class ProductCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, CachedProduct> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private long generation;
+
+    @Autowired
+    public ProductCache(@Value("${product.cache.max-size:1000}") int maxSize,
+                        @Value("${product.cache.ttl:60s}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.hits = meterRegistry.counter("product.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("product.cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("product.cache.evictions");
+        meterRegistry.gauge("product.cache.size", this, ProductCache::size);
+    }
+
+    public synchronized Map<Long, Product> getAll(Collection<Long> ids) {
+        Map<Long, Product> found = new HashMap<>();
+        long now = System.nanoTime();
+
+        for (Long id : ids) {
+            CachedProduct cached = entries.get(id);
+            if (cached != null && now - cached.loadedAt > ttlNanos) {
+                entries.remove(id);
+                evictions.increment();
+                cached = null;
+            }
+
+            if (cached != null) {
+                found.put(id, copy(cached.product));
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a token to be passed to {@link #putAll(Collection, long)} after products are loaded, so that products
+     * read before a concurrent invalidation are not cached.
+     */
+    public synchronized long currentGeneration() {
+        return generation;
+    }
+
+    public synchronized void putAll(Collection<Product> products, long loadGeneration) {
+        if (loadGeneration != generation) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        for (Product product : products) {
+            entries.put(product.getId(), new CachedProduct(copy(product), now));
+        }
+
+        while (entries.size() > maxSize) {
+            Long eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Evicts given products now and, when called inside a transaction, once more after it completes, so that readers
+     * racing with the change cannot cache its uncommitted state.
+     */
+    public void invalidate(Collection<Long> ids) {
+        evict(ids);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(ids);
+                }
+            });
+        }
+    }
+
+    public void invalidate(Long id) {
+        invalidate(Collections.singleton(id));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void evict(Collection<Long> ids) {
+        generation++;
+        ids.forEach(entries::remove);
+    }
+
+    private static Product copy(Product product) {
+        Product copy = new Product(product.getName(), product.getDescription(),
+                                   product.getImages() != null ? new HashSet<>(product.getImages()) : null,
+                                   product.getPrice(), product.getQuantity());
+        copy.setId(product.getId());
+        copy.setVersion(product.getVersion());
+        return copy;
+    }
+
+    private static class CachedProduct {
+
+        private final Product product;
+        private final long loadedAt;
+
+        CachedProduct(Product product, long loadedAt) {
+            this.product = product;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
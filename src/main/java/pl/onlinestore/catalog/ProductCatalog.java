@@ -0,0 +1,98 @@
+package pl.onlinestore.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.model.Product;
+
+@Component
+public class ProductCatalog {
+
+    private final boolean enabled;
+    private final ProductDao productDao;
+    private final ObjectMapper mapper;
+    private final AtomicReference<CatalogSnapshot> snapshot =
+        new AtomicReference<>(CatalogSnapshot.of(0, Collections.emptyList()));
+
+    @Autowired
+    public ProductCatalog(@Value("${catalog.snapshot.enabled:false}") boolean enabled, ProductDao productDao,
+                          ObjectMapper mapper) {
+        this.enabled = enabled;
+        this.productDao = productDao;
+        this.mapper = mapper;
+    }
+
+    @PostConstruct
+    public synchronized void warmUp() {
+        if (!enabled) {
+            return;
+        }
+
+        List<CatalogEntry> entries = new ArrayList<>();
+        productDao.findAll().forEach(product -> entries.add(toEntry(product)));
+        snapshot.set(CatalogSnapshot.of(snapshot.get().getVersion() + 1, entries));
+    }
+
+    /**
+     * Replaces the entry of the changed product, serialized from the product in the event unless its images still
+     * have to be loaded.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        CatalogSnapshot current = snapshot.get();
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            snapshot.set(current.without(event.getProductId()));
+        } else if (Hibernate.isInitialized(event.getProduct().getImages())) {
+            snapshot.set(current.with(toEntry(event.getProduct())));
+        } else {
+            Iterable<Product> products = productDao.findAllById(Collections.singleton(event.getProductId()));
+            for (Product product : products) {
+                current = current.with(toEntry(product));
+            }
+            snapshot.set(current);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>();
+        event.getProducts().forEach(product -> ids.add(product.getId()));
+        List<CatalogEntry> entries = new ArrayList<>();
+        productDao.findAllById(ids).forEach(product -> entries.add(toEntry(product)));
+        snapshot.set(snapshot.get().with(entries));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CatalogSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    private CatalogEntry toEntry(Product product) {
+        try {
+            return new CatalogEntry(product, mapper.writeValueAsString(product));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize product with id: " + product.getId(), e);
+        }
+    }
+}
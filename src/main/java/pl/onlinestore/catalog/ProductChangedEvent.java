@@ -0,0 +1,31 @@
+package pl.onlinestore.catalog;
+
+import pl.onlinestore.model.Product;
+
+public class ProductChangedEvent {
+
+    public enum Type {
+        SAVED,
+        DELETED
+    }
+
+    private final Product product;
+    private final Type type;
+
+    public ProductChangedEvent(Product product, Type type) {
+        this.product = product;
+        this.type = type;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public Long getProductId() {
+        return product.getId();
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
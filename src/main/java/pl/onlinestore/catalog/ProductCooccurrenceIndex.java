@@ -0,0 +1,293 @@
+package pl.onlinestore.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.onlinestore.dao.OrderDao;
+
+/**
+ * Counts of orders in which each pair of products was bought together. Every product keeps its neighbours sorted by
+ * that count, up to the configured number, so related products are looked up without scanning the counts. The counts
+ * follow placed and deleted orders.
+ */
+@Component
+public class ProductCooccurrenceIndex {
+
+    private static final int ORDERS_PER_REBUILD_TASK = 1000;
+    private static final int ORDERS_PER_REBUILD_CHUNK = 64 * ORDERS_PER_REBUILD_TASK;
+
+    private final OrderDao orderDao;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxRelated;
+    private volatile Map<Long, Neighbours> neighbours = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ProductCooccurrenceIndex(OrderDao orderDao, PlatformTransactionManager transactionManager,
+                                    @Value("${product.related.max-per-product:20}") int maxRelated) {
+        this.orderDao = orderDao;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.maxRelated = maxRelated;
+    }
+
+    /**
+     * Counts products bought together in all orders, streamed from the database and counted in chunks of
+     * {@link #ORDERS_PER_REBUILD_CHUNK} orders, so that only the counts are kept in memory.
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        Map<Long, Neighbours> counted = new HashMap<>();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> items = orderDao.streamProductIdsOfAllOrders()) {
+                List<long[]> baskets = new ArrayList<>();
+                Long currentOrderId = null;
+                List<Long> basket = new ArrayList<>();
+
+                for (Iterator<Object[]> iterator = items.iterator(); iterator.hasNext(); ) {
+                    Object[] item = iterator.next();
+                    if (!item[0].equals(currentOrderId)) {
+                        addBasket(baskets, basket);
+                        basket.clear();
+                        currentOrderId = (Long) item[0];
+                        if (baskets.size() >= ORDERS_PER_REBUILD_CHUNK) {
+                            count(baskets, counted);
+                            baskets.clear();
+                        }
+                    }
+                    basket.add((Long) item[1]);
+                }
+                addBasket(baskets, basket);
+                count(baskets, counted);
+            }
+        });
+
+        counted.values().forEach(productNeighbours -> productNeighbours.sortTop(maxRelated));
+        neighbours = new ConcurrentHashMap<>(counted);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onOrderPlaced(OrderPlacedEvent event) {
+        long[] productIds = event.getQuantities().keySet().stream().mapToLong(Long::longValue).toArray();
+        for (long productId : productIds) {
+            Neighbours productNeighbours = neighbours.computeIfAbsent(productId, id -> new Neighbours());
+            for (long otherProductId : productIds) {
+                if (otherProductId != productId) {
+                    productNeighbours.add(otherProductId, 1, maxRelated);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onOrderDeleted(OrderDeletedEvent event) {
+        for (long productId : event.getProductIds()) {
+            Neighbours productNeighbours = neighbours.get(productId);
+            if (productNeighbours == null) {
+                continue;
+            }
+            for (long otherProductId : event.getProductIds()) {
+                if (otherProductId != productId) {
+                    productNeighbours.subtractOne(otherProductId, maxRelated);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() != ProductChangedEvent.Type.DELETED) {
+            return;
+        }
+
+        Neighbours removed = neighbours.remove(event.getProductId());
+        if (removed != null) {
+            for (long otherProductId : removed.neighbourIds()) {
+                Neighbours otherNeighbours = neighbours.get(otherProductId);
+                if (otherNeighbours != null) {
+                    otherNeighbours.remove(event.getProductId(), maxRelated);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns ids of at most {@code limit} products bought together with given one the most often, from the most
+     * frequent one. At most the configured number of products is kept per product.
+     */
+    public long[] related(long productId, int limit) {
+        Neighbours productNeighbours = neighbours.get(productId);
+        return productNeighbours != null ? productNeighbours.top(limit) : new long[0];
+    }
+
+    private static void count(List<long[]> baskets, Map<Long, Neighbours> counted) {
+        ForkJoinPool.commonPool().invoke(new CountTask(baskets, 0, baskets.size()))
+                    .forEach((productId, productNeighbours) -> counted.merge(productId, productNeighbours,
+                                                                             Neighbours::addAll));
+    }
+
+    private static void addBasket(List<long[]> baskets, List<Long> basket) {
+        if (basket.size() > 1) {
+            baskets.add(basket.stream().mapToLong(Long::longValue).distinct().toArray());
+        }
+    }
+
+    private static class CountTask extends RecursiveTask<Map<Long, Neighbours>> {
+
+        private final List<long[]> baskets;
+        private final int from;
+        private final int to;
+
+        CountTask(List<long[]> baskets, int from, int to) {
+            this.baskets = baskets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, Neighbours> compute() {
+            if (to - from > ORDERS_PER_REBUILD_TASK) {
+                int middle = (from + to) >>> 1;
+                CountTask left = new CountTask(baskets, from, middle);
+                left.fork();
+                Map<Long, Neighbours> counted = new CountTask(baskets, middle, to).compute();
+                left.join().forEach((productId, productNeighbours) ->
+                                        counted.merge(productId, productNeighbours, Neighbours::addAll));
+                return counted;
+            }
+
+            Map<Long, Neighbours> counted = new HashMap<>();
+            for (int position = from; position < to; position++) {
+                long[] productIds = baskets.get(position);
+                for (long productId : productIds) {
+                    Neighbours productNeighbours = counted.computeIfAbsent(productId, id -> new Neighbours());
+                    for (long otherProductId : productIds) {
+                        if (otherProductId != productId) {
+                            productNeighbours.counts.add(otherProductId, 1);
+                        }
+                    }
+                }
+            }
+            return counted;
+        }
+    }
+
+    private static class Neighbours {
+
+        private final LongIntHashMap counts = new LongIntHashMap();
+        private long[] topIds = new long[0];
+        private int[] topCounts = new int[0];
+        private int topSize;
+
+        synchronized void add(long productId, int delta, int maxTop) {
+            int count = counts.add(productId, delta);
+            if (topIds.length != maxTop) {
+                topIds = Arrays.copyOf(topIds, maxTop);
+                topCounts = Arrays.copyOf(topCounts, maxTop);
+            }
+
+            int position = indexOfTop(productId);
+            if (position < 0) {
+                if (topSize < maxTop) {
+                    position = topSize++;
+                } else if (isBefore(count, productId, topSize - 1)) {
+                    position = topSize - 1;
+                } else {
+                    return;
+                }
+            }
+
+            topIds[position] = productId;
+            topCounts[position] = count;
+            for (; position > 0 && isBefore(topCounts[position], topIds[position], position - 1); position--) {
+                swapTop(position, position - 1);
+            }
+        }
+
+        synchronized void subtractOne(long productId, int maxTop) {
+            if (counts.get(productId) <= 0) {
+                return;
+            }
+            if (counts.add(productId, -1) == 0) {
+                counts.remove(productId);
+            }
+            if (indexOfTop(productId) >= 0) {
+                sortTop(maxTop);
+            }
+        }
+
+        synchronized void remove(long productId, int maxTop) {
+            counts.remove(productId);
+            if (indexOfTop(productId) >= 0) {
+                sortTop(maxTop);
+            }
+        }
+
+        synchronized long[] top(int limit) {
+            return Arrays.copyOf(topIds, Math.min(limit, topSize));
+        }
+
+        synchronized long[] neighbourIds() {
+            long[] ids = new long[counts.size()];
+            int[] position = {0};
+            counts.forEach((productId, count) -> ids[position[0]++] = productId);
+            return ids;
+        }
+
+        Neighbours addAll(Neighbours other) {
+            other.counts.forEach(counts::add);
+            return this;
+        }
+
+        void sortTop(int maxTop) {
+            List<long[]> sorted = new ArrayList<>(counts.size());
+            counts.forEach((productId, count) -> sorted.add(new long[]{productId, count}));
+            sorted.sort((first, second) -> first[1] != second[1] ? Long.compare(second[1], first[1])
+                                                                   : Long.compare(first[0], second[0]));
+
+            topIds = new long[maxTop];
+            topCounts = new int[maxTop];
+            topSize = Math.min(maxTop, sorted.size());
+            for (int position = 0; position < topSize; position++) {
+                topIds[position] = sorted.get(position)[0];
+                topCounts[position] = (int) sorted.get(position)[1];
+            }
+        }
+
+        private boolean isBefore(int count, long productId, int position) {
+            return count > topCounts[position] || count == topCounts[position] && productId < topIds[position];
+        }
+
+        private int indexOfTop(long productId) {
+            for (int position = 0; position < topSize; position++) {
+                if (topIds[position] == productId) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        private void swapTop(int first, int second) {
+            long id = topIds[first];
+            topIds[first] = topIds[second];
+            topIds[second] = id;
+            int count = topCounts[first];
+            topCounts[first] = topCounts[second];
+            topCounts[second] = count;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package pl.onlinestore.catalog;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import pl.onlinestore.catalog.ProductChangedEvent.Type;
+import pl.onlinestore.model.Product;
+
+public class ProductEntityListener {
+
+    private static final ThreadLocal<Boolean> suppressed = ThreadLocal.withInitial(() -> false);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public ProductEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Runs given action without publishing a {@link ProductChangedEvent} for every product it saves or removes, so that
+     * the caller can publish a single event for all of them.
+     */
+    public static void withoutEvents(Runnable action) {
+        suppressed.set(true);
+        try {
+            action.run();
+        } finally {
+            suppressed.remove();
+        }
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void productSaved(Product product) {
+        if (!suppressed.get()) {
+            eventPublisher.publishEvent(new ProductChangedEvent(product, Type.SAVED));
+        }
+    }
+
+    @PostRemove
+    public void productRemoved(Product product) {
+        if (!suppressed.get()) {
+            eventPublisher.publishEvent(new ProductChangedEvent(product, Type.DELETED));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package pl.onlinestore.catalog;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.model.Product;
+
+@Component
+public class ProductPriceIndex {
+
+    private static final BigDecimal MAX_PRICE = BigDecimal.valueOf(Long.MAX_VALUE, 2);
+
+    private final ProductDao productDao;
+    private volatile PriceArrays prices = new PriceArrays(new long[0], new long[0]);
+
+    @Autowired
+    public ProductPriceIndex(ProductDao productDao) {
+        this.productDao = productDao;
+    }
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        List<Product> products = new ArrayList<>();
+        productDao.findAll().forEach(products::add);
+        products.sort(Comparator.comparing(Product::getPrice).thenComparing(Product::getId));
+
+        long[] cents = new long[products.size()];
+        long[] ids = new long[products.size()];
+        for (int position = 0; position < products.size(); position++) {
+            cents[position] = toCents(products.get(position).getPrice());
+            ids[position] = products.get(position).getId();
+        }
+        prices = new PriceArrays(cents, ids);
+    }
+
+    /**
+     * Moves the changed product to its new price. Changes that keep the price, like stock changes, leave the arrays
+     * as they are.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        int position = prices.positionOf(event.getProductId());
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            if (position >= 0) {
+                prices = prices.without(position);
+            }
+            return;
+        }
+
+        long cents = toCents(event.getProduct().getPrice());
+        if (position >= 0 && prices.cents[position] == cents) {
+            return;
+        }
+        PriceArrays updated = position >= 0 ? prices.without(position) : prices;
+        prices = updated.with(new long[] {event.getProductId()}, new long[] {cents});
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        List<Product> products = new ArrayList<>(event.getProducts());
+        products.sort(Comparator.comparing(Product::getPrice).thenComparing(Product::getId));
+
+        long[] cents = new long[products.size()];
+        long[] ids = new long[products.size()];
+        for (int position = 0; position < products.size(); position++) {
+            cents[position] = toCents(products.get(position).getPrice());
+            ids[position] = products.get(position).getId();
+        }
+        prices = prices.with(ids, cents);
+    }
+
+    /**
+     * Returns ids of products with price in given bounds in ascending order, or null when no bound is given.
+     */
+    public long[] search(BigDecimal greaterThan, BigDecimal lessThan, BigDecimal equalTo) {
+        if (greaterThan == null && lessThan == null && equalTo == null) {
+            return null;
+        }
+
+        PriceArrays current = prices;
+        int from = 0;
+        int to = current.cents.length;
+
+        if (greaterThan != null) {
+            from = Math.max(from, current.firstGreaterThan(toCents(greaterThan, RoundingMode.FLOOR)));
+        }
+        if (lessThan != null) {
+            to = Math.min(to, current.firstGreaterThan(toCents(lessThan, RoundingMode.CEILING) - 1));
+        }
+        if (equalTo != null) {
+            BigDecimal exactCents = equalTo.movePointRight(2);
+            if (exactCents.stripTrailingZeros().scale() > 0) {
+                return new long[0];
+            }
+            long cents = toCents(equalTo);
+            from = Math.max(from, current.firstGreaterThan(cents - 1));
+            to = Math.min(to, current.firstGreaterThan(cents));
+        }
+
+        if (from >= to) {
+            return new long[0];
+        }
+        long[] result = Arrays.copyOfRange(current.ids, from, to);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long toCents(BigDecimal price) {
+        return toCents(price, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Converts the price to cents. Prices out of the range of long are clamped to it, so that bounds beyond any price
+     * still match all or none of the products.
+     */
+    private static long toCents(BigDecimal price, RoundingMode roundingMode) {
+        if (price.compareTo(MAX_PRICE) >= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (price.compareTo(MAX_PRICE.negate()) <= 0) {
+            return -Long.MAX_VALUE;
+        }
+        return price.movePointRight(2).setScale(0, roundingMode).longValueExact();
+    }
+
+    private static class PriceArrays {
+
+        private final long[] cents;
+        private final long[] ids;
+
+        PriceArrays(long[] cents, long[] ids) {
+            this.cents = cents;
+            this.ids = ids;
+        }
+
+        int firstGreaterThan(long value) {
+            int low = 0;
+            int high = cents.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cents[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Merges given prices sorted in ascending order into these ones. Added prices go after the equal current ones.
+         */
+        PriceArrays with(long[] addedIds, long[] addedCents) {
+            int size = cents.length + addedCents.length;
+            long[] newCents = new long[size];
+            long[] newIds = new long[size];
+            int position = 0;
+            int addedPosition = 0;
+
+            for (int target = 0; target < size; target++) {
+                boolean takeAdded = position == cents.length
+                    || addedPosition < addedCents.length && addedCents[addedPosition] < cents[position];
+                if (takeAdded) {
+                    newCents[target] = addedCents[addedPosition];
+                    newIds[target] = addedIds[addedPosition++];
+                } else {
+                    newCents[target] = cents[position];
+                    newIds[target] = ids[position++];
+                }
+            }
+            return new PriceArrays(newCents, newIds);
+        }
+
+        int positionOf(long id) {
+            for (int position = 0; position < ids.length; position++) {
+                if (ids[position] == id) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        PriceArrays without(int position) {
+            long[] newCents = new long[cents.length - 1];
+            long[] newIds = new long[ids.length - 1];
+
+            System.arraycopy(cents, 0, newCents, 0, position);
+            System.arraycopy(ids, 0, newIds, 0, position);
+            System.arraycopy(cents, position + 1, newCents, position, cents.length - position - 1);
+            System.arraycopy(ids, position + 1, newIds, position, ids.length - position - 1);
+
+            return new PriceArrays(newCents, newIds);
+        }
+    }
+}
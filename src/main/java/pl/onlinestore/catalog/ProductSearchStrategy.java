@@ -0,0 +1,11 @@
+package pl.onlinestore.catalog;
+
+import java.util.List;
+
+public interface ProductSearchStrategy {
+
+    /**
+     * Returns ids of products matching all words of the query, ordered from the most relevant one.
+     */
+    List<Long> search(String query, int limit);
+}
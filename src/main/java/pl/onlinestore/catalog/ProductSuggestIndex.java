@@ -0,0 +1,228 @@
+package pl.onlinestore.catalog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.util.ProductSuggestion;
+
+@Component
+public class ProductSuggestIndex {
+
+    private final ProductDao productDao;
+    private final int keyLength;
+    private final int maxWordsPerName;
+    private volatile NameArrays names = new NameArrays(new String[0], new long[0], new String[0]);
+
+    @Autowired
+    public ProductSuggestIndex(ProductDao productDao,
+                               @Value("${product.suggest.key-length:32}") int keyLength,
+                               @Value("${product.suggest.max-words-per-name:5}") int maxWordsPerName) {
+        this.productDao = productDao;
+        this.keyLength = keyLength;
+        this.maxWordsPerName = maxWordsPerName;
+    }
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        List<Entry> entries = new ArrayList<>();
+        for (Product product : productDao.findAll()) {
+            entries.addAll(toEntries(product.getId(), product.getName()));
+        }
+        names = NameArrays.of(entries);
+    }
+
+    /**
+     * Replaces entries of the changed product. Changes that keep the name, like stock changes, leave the arrays as
+     * they are.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() != ProductChangedEvent.Type.DELETED
+            && event.getProduct().getName().equals(names.nameOf(event.getProductId()))) {
+            return;
+        }
+
+        NameArrays updated = names.without(event.getProductId());
+        if (event.getType() != ProductChangedEvent.Type.DELETED) {
+            updated = updated.with(toEntries(event.getProductId(), event.getProduct().getName()));
+        }
+        names = updated;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        List<Entry> entries = new ArrayList<>();
+        for (Product product : event.getProducts()) {
+            entries.addAll(toEntries(product.getId(), product.getName()));
+        }
+        names = names.with(entries);
+    }
+
+    /**
+     * Returns up to {@code limit} products whose name, or one of its first words, starts with given prefix, in
+     * alphabetical order of the matching part. Letters are compared without case and diacritics.
+     */
+    public List<ProductSuggestion> suggest(String prefix, int limit) {
+        List<String> words = ProductText.words(prefix);
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String key = toKey(words);
+        NameArrays current = names;
+        Map<Long, ProductSuggestion> suggestions = new LinkedHashMap<>();
+
+        for (int position = current.firstNotLessThan(key);
+             position < current.keys.length && current.keys[position].startsWith(key) && suggestions.size() < limit;
+             position++) {
+            suggestions.putIfAbsent(current.ids[position],
+                                    new ProductSuggestion(current.ids[position], current.names[position]));
+        }
+        return new ArrayList<>(suggestions.values());
+    }
+
+    private List<Entry> toEntries(long id, String name) {
+        List<String> words = ProductText.words(name);
+        List<Entry> entries = new ArrayList<>();
+
+        for (int word = 0; word < words.size() && word < maxWordsPerName; word++) {
+            entries.add(new Entry(toKey(words.subList(word, words.size())), id, name));
+        }
+        return entries;
+    }
+
+    private String toKey(List<String> words) {
+        String key = String.join(" ", words);
+        return key.length() > keyLength ? key.substring(0, keyLength) : key;
+    }
+
+    private static class Entry {
+
+        private final String key;
+        private final long id;
+        private final String name;
+
+        Entry(String key, long id, String name) {
+            this.key = key;
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static class NameArrays {
+
+        private static final Comparator<Entry> ENTRY_ORDER =
+            Comparator.comparing((Entry entry) -> entry.key).thenComparingLong(entry -> entry.id);
+
+        private final String[] keys;
+        private final long[] ids;
+        private final String[] names;
+
+        NameArrays(String[] keys, long[] ids, String[] names) {
+            this.keys = keys;
+            this.ids = ids;
+            this.names = names;
+        }
+
+        static NameArrays of(List<Entry> entries) {
+            entries.sort(ENTRY_ORDER);
+
+            String[] keys = new String[entries.size()];
+            long[] ids = new long[entries.size()];
+            String[] names = new String[entries.size()];
+            for (int position = 0; position < entries.size(); position++) {
+                keys[position] = entries.get(position).key;
+                ids[position] = entries.get(position).id;
+                names[position] = entries.get(position).name;
+            }
+            return new NameArrays(keys, ids, names);
+        }
+
+        int firstNotLessThan(String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        NameArrays with(List<Entry> added) {
+            added.sort(ENTRY_ORDER);
+
+            int size = keys.length + added.size();
+            String[] newKeys = new String[size];
+            long[] newIds = new long[size];
+            String[] newNames = new String[size];
+            int position = 0;
+            int addedPosition = 0;
+
+            for (int target = 0; target < size; target++) {
+                boolean takeAdded = position == keys.length
+                    || addedPosition < added.size()
+                       && ENTRY_ORDER.compare(added.get(addedPosition), new Entry(keys[position], ids[position], null)) < 0;
+                if (takeAdded) {
+                    Entry entry = added.get(addedPosition++);
+                    newKeys[target] = entry.key;
+                    newIds[target] = entry.id;
+                    newNames[target] = entry.name;
+                } else {
+                    newKeys[target] = keys[position];
+                    newIds[target] = ids[position];
+                    newNames[target] = names[position];
+                    position++;
+                }
+            }
+            return new NameArrays(newKeys, newIds, newNames);
+        }
+
+        String nameOf(long id) {
+            for (int position = 0; position < ids.length; position++) {
+                if (ids[position] == id) {
+                    return names[position];
+                }
+            }
+            return null;
+        }
+
+        NameArrays without(long id) {
+            int remaining = 0;
+            for (long entryId : ids) {
+                if (entryId != id) {
+                    remaining++;
+                }
+            }
+            if (remaining == ids.length) {
+                return this;
+            }
+
+            String[] newKeys = new String[remaining];
+            long[] newIds = new long[remaining];
+            String[] newNames = new String[remaining];
+            int target = 0;
+            for (int position = 0; position < ids.length; position++) {
+                if (ids[position] != id) {
+                    newKeys[target] = keys[position];
+                    newIds[target] = ids[position];
+                    newNames[target] = names[position];
+                    target++;
+                }
+            }
+            return new NameArrays(newKeys, newIds, newNames);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pl.onlinestore.catalog;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folding and tokenizing shared by the in-memory product indexes, so that they agree on which texts match.
+ */
+final class ProductText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private ProductText() {
+    }
+
+    /**
+     * Returns given text in lower case, without diacritics.
+     */
+    static String fold(String text) {
+        return COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                              .replace('\u0142', 'l')
+                              .replace('\u0141', 'L')
+                              .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns folded words of given text, in their order.
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATORS.split(fold(text))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
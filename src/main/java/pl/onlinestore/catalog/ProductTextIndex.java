@@ -0,0 +1,294 @@
+package pl.onlinestore.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.model.Product;
+
+@Component
+public class ProductTextIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final double NAME_WEIGHT = 1.0;
+    private static final double DESCRIPTION_WEIGHT = 0.4;
+
+    private final ProductDao productDao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NGramField names = new NGramField();
+    private final NGramField descriptions = new NGramField();
+    private volatile RankedWords rankedWords;
+
+    @Autowired
+    public ProductTextIndex(ProductDao productDao) {
+        this.productDao = productDao;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            descriptions.clear();
+            if (rankedWords != null) {
+                rankedWords.clear();
+            }
+            productDao.findAll().forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.getType() == ProductChangedEvent.Type.DELETED) {
+                names.remove(event.getProductId());
+                descriptions.remove(event.getProductId());
+                if (rankedWords != null) {
+                    rankedWords.remove(event.getProductId());
+                }
+            } else {
+                put(event.getProduct());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsImported(ProductsImportedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.getProducts().forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of products whose name and description contain given values (case-sensitive, like SQL LIKE without
+     * wildcards). A null value does not restrict the result. Returns null when neither value is given.
+     */
+    public Set<Long> search(String nameContains, String descContains) {
+        if (nameContains == null && descContains == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<Long> result = nameContains != null ? names.search(nameContains) : null;
+            if (descContains != null && (result == null || !result.isEmpty())) {
+                Set<Long> descriptionMatches = descriptions.search(descContains);
+                if (result == null) {
+                    result = descriptionMatches;
+                } else {
+                    result.retainAll(descriptionMatches);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns ids of up to {@code limit} products containing all words of given query, best matches first. Words are
+     * compared without case and diacritics, and words of the name weigh more than words of the description.
+     */
+    public List<Long> rank(String query, int limit) {
+        Set<String> queryWords = new LinkedHashSet<>(ProductText.words(query));
+        if (queryWords.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (rankedWords == null) {
+            buildRankedWords();
+        }
+
+        lock.readLock().lock();
+        try {
+            return rankedWords.search(queryWords, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked words are only needed by the in-memory search strategy, so they are built on first use from the texts
+     * already loaded for the trigram postings.
+     */
+    private void buildRankedWords() {
+        lock.writeLock().lock();
+        try {
+            if (rankedWords == null) {
+                RankedWords built = new RankedWords();
+                Set<Long> ids = new HashSet<>(names.texts.keySet());
+                ids.addAll(descriptions.texts.keySet());
+                ids.forEach(id -> built.put(id, names.texts.get(id), descriptions.texts.get(id)));
+                rankedWords = built;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Product product) {
+        names.put(product.getId(), product.getName());
+        descriptions.put(product.getId(), product.getDescription());
+        if (rankedWords != null) {
+            rankedWords.put(product.getId(), product.getName(), product.getDescription());
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        String folded = ProductText.fold(text);
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++) {
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static class NGramField {
+
+        private final Map<String, Set<Long>> postings = new HashMap<>();
+        private final Map<Long, String> texts = new HashMap<>();
+
+        void put(Long id, String text) {
+            remove(id);
+            if (text == null) {
+                return;
+            }
+
+            texts.put(id, text);
+            for (String gram : grams(text)) {
+                postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(Long id) {
+            String text = texts.remove(id);
+            if (text == null) {
+                return;
+            }
+
+            for (String gram : grams(text)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+
+        void clear() {
+            postings.clear();
+            texts.clear();
+        }
+
+        Set<Long> search(String term) {
+            Set<Long> result = new HashSet<>();
+
+            if (term.length() < GRAM_LENGTH) {
+                texts.forEach((id, text) -> {
+                    if (text.contains(term)) {
+                        result.add(id);
+                    }
+                });
+                return result;
+            }
+
+            List<Set<Long>> gramPostings = new ArrayList<>();
+            for (String gram : grams(term)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    return result;
+                }
+                gramPostings.add(ids);
+            }
+            gramPostings.sort(Comparator.comparingInt(Set::size));
+
+            for (Long candidate : gramPostings.get(0)) {
+                if (gramPostings.stream().allMatch(ids -> ids.contains(candidate))
+                    && texts.get(candidate).contains(term)) {
+                    result.add(candidate);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class RankedWords {
+
+        private final Map<String, Map<Long, Double>> postings = new HashMap<>();
+        private final Map<Long, Set<String>> productWords = new HashMap<>();
+
+        void put(Long id, String name, String description) {
+            remove(id);
+
+            Map<String, Double> weights = new HashMap<>();
+            addWords(weights, name, NAME_WEIGHT);
+            addWords(weights, description, DESCRIPTION_WEIGHT);
+
+            weights.forEach((word, weight) -> postings.computeIfAbsent(word, key -> new HashMap<>()).put(id, weight));
+            productWords.put(id, weights.keySet());
+        }
+
+        void remove(Long id) {
+            for (String word : productWords.getOrDefault(id, Collections.emptySet())) {
+                Map<Long, Double> wordPostings = postings.get(word);
+                wordPostings.remove(id);
+                if (wordPostings.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+            productWords.remove(id);
+        }
+
+        void clear() {
+            postings.clear();
+            productWords.clear();
+        }
+
+        List<Long> search(Set<String> queryWords, int limit) {
+            Map<Long, Double> scores = null;
+            for (String word : queryWords) {
+                Map<Long, Double> wordScores = postings.getOrDefault(word, Collections.emptyMap());
+                if (scores == null) {
+                    scores = new HashMap<>(wordScores);
+                } else {
+                    scores.keySet().retainAll(wordScores.keySet());
+                    scores.replaceAll((id, score) -> score + wordScores.get(id));
+                }
+            }
+
+            return scores.entrySet().stream()
+                         .sorted(Comparator.comparing(Entry<Long, Double>::getValue).reversed()
+                                           .thenComparing(Entry::getKey))
+                         .limit(limit)
+                         .map(Entry::getKey)
+                         .collect(Collectors.toList());
+        }
+
+        private static void addWords(Map<String, Double> weights, String text, double weight) {
+            if (text != null) {
+                ProductText.words(text).forEach(word -> weights.merge(word, weight, Double::sum));
+            }
+        }
+    }
+}
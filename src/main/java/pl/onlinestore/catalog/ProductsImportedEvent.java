@@ -0,0 +1,21 @@
+package pl.onlinestore.catalog;
+
+import java.util.List;
+import pl.onlinestore.model.Product;
+
+/**
+ * Published once for a chunk of imported products instead of a {@link ProductChangedEvent} for every one of them, so
+ * that the in-memory indexes merge the whole chunk at once.
+ */
+public class ProductsImportedEvent {
+
+    private final List<Product> products;
+
+    public ProductsImportedEvent(List<Product> products) {
+        this.products = products;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+}
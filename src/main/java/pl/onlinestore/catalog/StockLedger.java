@@ -0,0 +1,236 @@
+package pl.onlinestore.catalog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.onlinestore.dao.ProductDao;
+
+/**
+ * Stock of hot products, kept in memory so that checkouts do not all wait for the lock of the same product row.
+ * Items of orders reserved here are saved as not yet taken out of stock, and their quantities are subtracted from the
+ * products in the database by {@link #flush()}, which also finishes the work of a previous run on startup.
+ */
+@Component
+public class StockLedger {
+
+    private static final String SELECT_AVAILABLE_STOCK =
+        "SELECT p.quantity - COALESCE((SELECT SUM(i.quantity) FROM order_item i "
+        + "WHERE i.product_id = p.id AND i.stock_applied = FALSE), 0) FROM product p WHERE p.id = ?";
+    private static final String SELECT_UNAPPLIED_ITEMS =
+        "SELECT id, product_id, quantity FROM order_item WHERE stock_applied = FALSE";
+    private static final String APPLY_STOCK = "UPDATE product SET quantity = quantity - ?, version = version + 1 WHERE id = ?";
+    private static final String MARK_ITEM_APPLIED = "UPDATE order_item SET stock_applied = TRUE WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductDao productDao;
+    private final ProductCache productCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Set<Long> configuredHotProductIds;
+    private final int stripes;
+    private final ConcurrentMap<Long, HotStock> hotStocks = new ConcurrentHashMap<>();
+    private volatile boolean flushNeeded = true;
+
+    @Autowired
+    public StockLedger(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ProductDao productDao,
+                       ProductCache productCache, ApplicationEventPublisher eventPublisher,
+                       @Value("${inventory.ledger.hot-product-ids:}") List<Long> hotProductIds,
+                       @Value("${inventory.ledger.stripes:8}") int stripes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.productDao = productDao;
+        this.productCache = productCache;
+        this.eventPublisher = eventPublisher;
+        this.configuredHotProductIds = new LinkedHashSet<>(hotProductIds);
+        this.stripes = stripes;
+    }
+
+    /**
+     * Subtracts quantities of orders reserved before a restart and loads the stock of configured hot products. Runs
+     * once the listeners are registered, so that the indexes see the updated stock.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void reconcile() {
+        flushNeeded = true;
+        flush();
+        configuredHotProductIds.forEach(this::markHot);
+    }
+
+    public synchronized void markHot(Long productId) {
+        if (!hotStocks.containsKey(productId)) {
+            hotStocks.put(productId, new HotStock(new StripedCounter(stripes, readAvailableStock(productId))));
+        }
+    }
+
+    /**
+     * Stops keeping stock of the product in memory. Quantities already reserved are written to the database first.
+     */
+    public synchronized void unmarkHot(Long productId) {
+        if (hotStocks.remove(productId) != null) {
+            flushNeeded = true;
+            flush();
+        }
+    }
+
+    public boolean isHot(Long productId) {
+        return hotStocks.containsKey(productId);
+    }
+
+    public long getAvailableStock(Long productId) {
+        HotStock stock = hotStocks.get(productId);
+        return stock != null ? Math.max(0, stock.available.sum()) : 0;
+    }
+
+    /**
+     * Takes given quantities of hot products out of stock, either all of them or none, and returns ids of the products
+     * that are not in stock in the ordered quantity. Called in a transaction, the quantities are given back if it
+     * rolls back.
+     */
+    public List<Long> reserve(Map<Long, Integer> quantities) {
+        Map<HotStock, Integer> reserved = new HashMap<>();
+        List<Long> notInStockProductIds = new ArrayList<>();
+
+        quantities.forEach((productId, quantity) -> {
+            // product unmarked in the meantime: its order item is subtracted by the next flush anyway
+            HotStock stock = hotStocks.get(productId);
+            if (stock == null) {
+                return;
+            }
+            if (stock.available.take(quantity)) {
+                stock.inFlight.addAndGet(quantity);
+                reserved.put(stock, quantity);
+            } else {
+                notInStockProductIds.add(productId);
+            }
+        });
+
+        if (!notInStockProductIds.isEmpty()) {
+            reserved.forEach((stock, quantity) -> {
+                stock.inFlight.addAndGet(-quantity);
+                stock.available.add(quantity);
+            });
+            return notInStockProductIds;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    complete(reserved, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            complete(reserved, true);
+        }
+        return notInStockProductIds;
+    }
+
+    /**
+     * Subtracts quantities of order items saved as not taken out of stock yet from their products, in one transaction.
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval:PT1S}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (!flushNeeded) {
+            return;
+        }
+        flushNeeded = false;
+
+        Map<Long, Long> appliedQuantities;
+        try {
+            appliedQuantities = transactionTemplate.execute(status -> applyUnappliedItems());
+        } catch (RuntimeException e) {
+            flushNeeded = true;
+            throw e;
+        }
+
+        if (appliedQuantities != null && !appliedQuantities.isEmpty()) {
+            productCache.invalidate(appliedQuantities.keySet());
+            productDao.findAllById(appliedQuantities.keySet()).forEach(
+                product -> eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.SAVED)));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() == ProductChangedEvent.Type.DELETED) {
+            hotStocks.remove(event.getProductId());
+            return;
+        }
+
+        HotStock stock = hotStocks.get(event.getProductId());
+        if (stock != null) {
+            long current = stock.available.sum();
+            long expected = readAvailableStock(event.getProductId()) - stock.inFlight.get();
+            if (expected > current) {
+                stock.available.add(expected - current);
+            } else if (expected < current) {
+                stock.available.subtract(current - expected);
+            }
+        }
+    }
+
+    private Map<Long, Long> applyUnappliedItems() {
+        List<Object[]> appliedItems = new ArrayList<>();
+        Map<Long, Long> appliedQuantities = new HashMap<>();
+
+        jdbcTemplate.query(SELECT_UNAPPLIED_ITEMS, row -> {
+            appliedItems.add(new Object[]{row.getLong(1)});
+            appliedQuantities.merge(row.getLong(2), row.getLong(3), Long::sum);
+        });
+
+        if (!appliedItems.isEmpty()) {
+            List<Object[]> productUpdates = new ArrayList<>();
+            appliedQuantities.forEach((productId, quantity) -> productUpdates.add(new Object[]{quantity, productId}));
+            jdbcTemplate.batchUpdate(APPLY_STOCK, productUpdates);
+            jdbcTemplate.batchUpdate(MARK_ITEM_APPLIED, appliedItems);
+        }
+        return appliedQuantities;
+    }
+
+    private long readAvailableStock(Long productId) {
+        List<Long> stock = jdbcTemplate.queryForList(SELECT_AVAILABLE_STOCK, Long.class, productId);
+        return stock.isEmpty() ? 0 : stock.get(0);
+    }
+
+    private void complete(Map<HotStock, Integer> reserved, boolean committed) {
+        reserved.forEach((stock, quantity) -> {
+            stock.inFlight.addAndGet(-quantity);
+            if (!committed) {
+                stock.available.add(quantity);
+            }
+        });
+        if (committed) {
+            flushNeeded = true;
+        }
+    }
+
+    private static class HotStock {
+
+        private final StripedCounter available;
+        private final AtomicLong inFlight = new AtomicLong();
+
+        HotStock(StripedCounter available) {
+            this.available = available;
+        }
+    }
+}
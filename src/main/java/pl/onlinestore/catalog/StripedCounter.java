@@ -0,0 +1,138 @@
+package pl.onlinestore.catalog;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Amount split into stripes, so that concurrent takers mostly compare-and-set different memory locations. A take is
+ * served by a single stripe if possible, and only otherwise gathered from all of them.
+ */
+class StripedCounter {
+
+    /**
+     * Distance between used elements of the array, so that every stripe lies in its own cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+    private final AtomicLong debt = new AtomicLong();
+    private final int stripes;
+
+    StripedCounter(int stripes, long amount) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        if (amount < 0) {
+            debt.set(-amount);
+            return;
+        }
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            cells.set(stripe * PADDING, amount / stripes + (stripe < amount % stripes ? 1 : 0));
+        }
+    }
+
+    /**
+     * Takes given amount if that much is left and returns whether it was taken.
+     */
+    boolean take(long amount) {
+        int first = ThreadLocalRandom.current().nextInt(stripes);
+        for (int offset = 0; offset < stripes; offset++) {
+            int cell = ((first + offset) % stripes) * PADDING;
+            long current = cells.get(cell);
+            while (current >= amount) {
+                if (cells.compareAndSet(cell, current, current - amount)) {
+                    return true;
+                }
+                current = cells.get(cell);
+            }
+        }
+        return takeFromAll(amount);
+    }
+
+    /**
+     * Adds given amount, paying off first what could not be subtracted before.
+     */
+    void add(long amount) {
+        long remaining = amount;
+        long currentDebt = debt.get();
+        while (currentDebt > 0 && remaining > 0) {
+            long paid = Math.min(currentDebt, remaining);
+            if (debt.compareAndSet(currentDebt, currentDebt - paid)) {
+                remaining -= paid;
+                break;
+            }
+            currentDebt = debt.get();
+        }
+
+        if (remaining > 0) {
+            cells.getAndAdd(ThreadLocalRandom.current().nextInt(stripes) * PADDING, remaining);
+        }
+    }
+
+    /**
+     * Subtracts given amount even if less is left. The missing part is remembered as a debt, so that the stripes never
+     * become negative and a single one cannot serve a take the total does not cover.
+     */
+    void subtract(long amount) {
+        long[] taken = takeUpTo(amount);
+        long missing = amount;
+        for (long part : taken) {
+            missing -= part;
+        }
+        if (missing > 0) {
+            debt.addAndGet(missing);
+        }
+    }
+
+    long sum() {
+        long sum = -debt.get();
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            sum += cells.get(stripe * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Takes given amount gathered from all the stripes if that much is left. The parts are given back in the same lock
+     * as they were gathered, so that another gathering taker never misses them.
+     */
+    private synchronized boolean takeFromAll(long amount) {
+        long[] taken = takeUpTo(amount);
+        long missing = amount;
+        for (long part : taken) {
+            missing -= part;
+        }
+
+        if (missing > 0) {
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                cells.getAndAdd(stripe * PADDING, taken[stripe]);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gathers up to given amount from the stripes and returns the part taken from each one. Synchronized, so that two
+     * gathering takers cannot hold parts of the amount each other needs.
+     */
+    private synchronized long[] takeUpTo(long amount) {
+        long[] taken = new long[stripes];
+        long missing = amount;
+
+        for (int stripe = 0; stripe < stripes && missing > 0; stripe++) {
+            int cell = stripe * PADDING;
+            long current = cells.get(cell);
+            while (current > 0) {
+                long part = Math.min(current, missing);
+                if (cells.compareAndSet(cell, current, current - part)) {
+                    taken[stripe] = part;
+                    missing -= part;
+                    break;
+                }
+                current = cells.get(cell);
+            }
+        }
+        return taken;
+    }
+}
@@ -7,16 +7,22 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import pl.onlinestore.controller.OrderController;
+import pl.onlinestore.controller.OrderIntakeController;
+import pl.onlinestore.controller.ProductController;
 
 import java.util.Arrays;
 import java.util.List;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     @Value("${cors.allowed.origins}")
@@ -40,7 +46,12 @@ public class AppConfig {
         CorsConfiguration corsConfig = new CorsConfiguration();
         corsConfig.setAllowedOrigins(corsAllowedOrigins);
         corsConfig.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PATCH", "PUT", "DELETE", "OPTIONS"));
-        corsConfig.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-XSRF-TOKEN"));
+        corsConfig.setAllowedHeaders(Arrays.asList("Authorization", "Content-Type", "X-XSRF-TOKEN",
+                                                   OrderController.IDEMPOTENCY_KEY_HEADER,
+                                                   OrderIntakeController.PREFER_HEADER));
+        corsConfig.setExposedHeaders(Arrays.asList(ProductController.NEXT_CURSOR_HEADER, HttpHeaders.LOCATION,
+                                                   OrderIntakeController.PREFERENCE_APPLIED_HEADER,
+                                                   OrderController.TOTAL_COUNT_HEADER));
         corsConfig.setMaxAge(1800L);
         corsConfig.setAllowCredentials(true);
 
@@ -0,0 +1,70 @@
+package pl.onlinestore.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves images kept as a JSON array in the product row, by the JSON column layout of earlier versions, to rows of the
+ * product_images table and drops the column. Registered with Flyway as a bean, since parsing the arrays is not
+ * portable in SQL.
+ */
+@Component
+class ProductImagesColumnMigration implements JavaMigration {
+
+    private static final String SELECT_IMAGE_COLUMN = "SELECT id, images FROM product WHERE images IS NOT NULL";
+    private static final String INSERT_JOINED_IMAGE = "INSERT INTO product_images (product_id, image) VALUES (?, ?)";
+    private static final String DROP_IMAGE_COLUMN = "ALTER TABLE product DROP COLUMN images";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("16");
+    }
+
+    @Override
+    public String getDescription() {
+        return "product images column to join table";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean isUndo() {
+        return false;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        List<Object[]> columns = jdbcTemplate.query(SELECT_IMAGE_COLUMN,
+                                                    (row, rowNum) -> new Object[]{row.getLong(1), row.getString(2)});
+        List<Object[]> inserts = new ArrayList<>();
+        for (Object[] column : columns) {
+            String[] images = mapper.readValue((String) column[1], String[].class);
+            for (String image : new LinkedHashSet<>(Arrays.asList(images))) {
+                inserts.add(new Object[]{column[0], image});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_JOINED_IMAGE, inserts);
+        jdbcTemplate.update(DROP_IMAGE_COLUMN);
+    }
+}
@@ -0,0 +1,40 @@
+package pl.onlinestore.configuration;
+
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import pl.onlinestore.catalog.InMemoryProductSearchStrategy;
+import pl.onlinestore.catalog.PostgresProductSearchStrategy;
+import pl.onlinestore.catalog.ProductSearchStrategy;
+import pl.onlinestore.catalog.ProductTextIndex;
+
+@Configuration
+public class ProductSearchConfig {
+
+    @Value("${product.search.strategy:auto}")
+    private String searchStrategy;
+
+    @Bean
+    public ProductSearchStrategy productSearchStrategy(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                                       ProductTextIndex textIndex) throws MetaDataAccessException {
+        String strategy = searchStrategy;
+        if ("auto".equals(strategy)) {
+            String databaseName = JdbcUtils.extractDatabaseMetaData(dataSource, "getDatabaseProductName");
+            strategy = DatabaseDriver.fromProductName(databaseName) == DatabaseDriver.POSTGRESQL ? "postgresql" : "memory";
+        }
+
+        switch (strategy) {
+            case "postgresql":
+                return new PostgresProductSearchStrategy(jdbcTemplate);
+            case "memory":
+                return new InMemoryProductSearchStrategy(textIndex);
+            default:
+                throw new IllegalStateException("Unknown product search strategy: " + strategy);
+        }
+    }
+}
@@ -17,9 +17,11 @@ public class RequestAuthorizationConfigurer implements
         expressionInterceptUrlRegistry
             .antMatchers(HttpMethod.DELETE).hasRole(Role.MANAGER.name())
             .antMatchers(HttpMethod.GET, SWAGGER_PATH_MATCHERS.toArray(new String[0])).hasRole(Role.DEVELOPER.name())
-            .antMatchers(HttpMethod.GET, "/api/orders/buyer").authenticated()
+            .antMatchers(HttpMethod.GET, "/actuator/health/**").permitAll()
+            .antMatchers(HttpMethod.GET, "/actuator/**").hasRole(Role.MANAGER.name())
+            .antMatchers(HttpMethod.GET, "/api/orders/buyer", "/api/orders/intake/*").authenticated()
             .antMatchers(HttpMethod.GET, "/api/users/**", "/api/orders/**").hasRole(Role.MANAGER.name())
-            .antMatchers(HttpMethod.POST, "/api/products").hasRole(Role.MANAGER.name())
+            .antMatchers(HttpMethod.POST, "/api/products", "/api/products/import").hasRole(Role.MANAGER.name())
             .antMatchers(HttpMethod.PUT, "/api/products", "/api/users").hasRole(Role.MANAGER.name())
             .antMatchers(HttpMethod.PATCH, "/api/orders").hasRole(Role.MANAGER.name())
             .antMatchers(HttpMethod.POST, "/api/users").permitAll()
@@ -0,0 +1,46 @@
+package pl.onlinestore.controller;
+
+import java.lang.reflect.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.service.CheckoutContext;
+
+/**
+ * Times parsing of new orders as the first stage of their checkout.
+ */
+@ControllerAdvice
+public class CheckoutRequestBodyAdvice extends RequestBodyAdviceAdapter {
+
+    private final CheckoutContext checkoutContext;
+
+    @Autowired
+    public CheckoutRequestBodyAdvice(CheckoutContext checkoutContext) {
+        this.checkoutContext = checkoutContext;
+    }
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return Order.class.equals(targetType) && methodParameter.hasMethodAnnotation(PostMapping.class);
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        checkoutContext.startParsing();
+        return inputMessage;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        checkoutContext.finishParsing();
+        return body;
+    }
+}
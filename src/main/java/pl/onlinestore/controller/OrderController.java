@@ -3,17 +3,35 @@ package pl.onlinestore.controller;
 import com.fasterxml.jackson.annotation.JsonView;
 import io.swagger.annotations.*;
 
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.onlinestore.catalog.StockLedger;
+import pl.onlinestore.exception.InvalidRequestParameterException;
 import pl.onlinestore.model.Order;
+import pl.onlinestore.model.enums.OrderSort;
+import pl.onlinestore.model.enums.OrderStatus;
+import pl.onlinestore.model.enums.PaymentMethod;
+import pl.onlinestore.service.CheckoutContext;
+import pl.onlinestore.service.IdempotentOrderService;
 import pl.onlinestore.service.OrderService;
-import pl.onlinestore.service.ProductService;
 import pl.onlinestore.util.JsonViews.OrderDetailed;
 import pl.onlinestore.util.JsonViews.OrderSimple;
+import pl.onlinestore.util.OrderFilter;
+import pl.onlinestore.util.OrderPage;
+import pl.onlinestore.util.OrderSummary;
+import pl.onlinestore.util.StreamingJsonWriter;
 import pl.onlinestore.validation.OrderValidator;
 
 @RestController
@@ -21,21 +39,106 @@ import pl.onlinestore.validation.OrderValidator;
 @Api(tags = "Order controller", description = "Endpoints for getting, adding and removing orders that users make.")
 public class OrderController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final OrderService orderService;
-    private final ProductService productService;
+    private final IdempotentOrderService idempotentOrderService;
+    private final CheckoutContext checkoutContext;
+    private final StreamingJsonWriter streamingJsonWriter;
+    private final StockLedger stockLedger;
 
     @Autowired
-    public OrderController(OrderService orderService, ProductService productService) {
+    public OrderController(OrderService orderService, IdempotentOrderService idempotentOrderService,
+                           CheckoutContext checkoutContext, StreamingJsonWriter streamingJsonWriter,
+                           StockLedger stockLedger) {
         this.orderService = orderService;
-        this.productService = productService;
+        this.idempotentOrderService = idempotentOrderService;
+        this.checkoutContext = checkoutContext;
+        this.streamingJsonWriter = streamingJsonWriter;
+        this.stockLedger = stockLedger;
     }
 
     @GetMapping
-    @ApiOperation(value = "Returns list of all orders in the store")
-    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to get orders")})
+    @ApiOperation(value = "Returns list of all orders in the store. Can be filtered, sorted and paged.",
+                  notes = "When any of the parameters is given, a single page of matching orders is returned and the "
+                          + "number of all of them is sent in the " + TOTAL_COUNT_HEADER + " response header.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Parameter is invalid or page is out of range"),
+                           @ApiResponse(code = 403, message = "Non-manager is trying to get orders")})
     @JsonView(OrderDetailed.class)
-    public List<Order> getOrders() {
-        return orderService.getAll();
+    public ResponseEntity<List<Order>> getOrders(
+        @RequestParam(value = "status", required = false)
+        @ApiParam(value = "Filters by order status.") OrderStatus status,
+
+        @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+        @ApiParam(value = "Filters by order time at or after this one.", example = "2021-05-01T00:00:00Z")
+            OffsetDateTime from,
+
+        @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+        @ApiParam(value = "Filters by order time before this one.", example = "2021-06-01T00:00:00Z") OffsetDateTime to,
+
+        @RequestParam(value = "buyerId", required = false)
+        @ApiParam(value = "Filters by ID of the buyer.", example = "1") Long buyerId,
+
+        @RequestParam(value = "paymentMethod", required = false)
+        @ApiParam(value = "Filters by payment method.") PaymentMethod paymentMethod,
+
+        @RequestParam(value = "sort", required = false)
+        @ApiParam(value = "Attribute the page is ordered by, TIME by default.") OrderSort sort,
+
+        @RequestParam(value = "direction", required = false)
+        @ApiParam(value = "Direction of the order, DESC by default.") Sort.Direction direction,
+
+        @RequestParam(value = "page", required = false)
+        @ApiParam(value = "Number of the page, starting from 0.", example = "0") Integer page,
+
+        @RequestParam(value = "size", required = false)
+        @ApiParam(value = "Maximum number of orders in the page.", example = "20") Integer size) {
+
+        if (Stream.of(status, from, to, buyerId, paymentMethod, sort, direction, page, size)
+                  .allMatch(Objects::isNull)) {
+            return ResponseEntity.ok(orderService.getAll());
+        }
+
+        int pageNumber = page != null ? page : 0;
+        int pageSize = size != null ? size : DEFAULT_PAGE_SIZE;
+        if (pageNumber < 0) {
+            throw new InvalidRequestParameterException("Page number must not be negative.");
+        }
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidRequestParameterException(
+                String.format("Page size must be from 1 to %d.", MAX_PAGE_SIZE));
+        }
+        if ((long) pageNumber * pageSize > Integer.MAX_VALUE) {
+            throw new InvalidRequestParameterException("Page number is out of range.");
+        }
+
+        OrderPage orderPage = orderService.getPage(new OrderFilter(status, from, to, buyerId, paymentMethod),
+                                                   sort != null ? sort : OrderSort.TIME,
+                                                   direction != null ? direction : Sort.Direction.DESC,
+                                                   pageNumber, pageSize);
+        return ResponseEntity.ok()
+                             .header(TOTAL_COUNT_HEADER, String.valueOf(orderPage.getTotalCount()))
+                             .body(orderPage.getOrders());
+    }
+
+    @GetMapping(params = "view=summary")
+    @ApiOperation(value = "Returns summaries of all orders in the store",
+                  notes = "Summary consists of order ID, status, time, total cost and number of items.")
+    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to get orders")})
+    public List<OrderSummary> getOrderSummaries() {
+        return orderService.getAllSummaries();
+    }
+
+    @GetMapping(params = "stream=true")
+    @ApiOperation(value = "Streams list of all orders in the store",
+                  notes = "Orders are written to the response as they are read from the database.")
+    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to get orders")})
+    public ResponseEntity<StreamingResponseBody> streamOrders() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                             .body(streamingJsonWriter.write(orderService::streamAll, OrderDetailed.class));
     }
 
     @GetMapping("/{id}")
@@ -57,6 +160,21 @@ public class OrderController {
         return orderService.getByBuyerId(id);
     }
 
+    @GetMapping(value = "/buyer/{id}", params = "view=summary")
+    @ApiOperation(value = "Returns summaries of orders made by particular user.")
+    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to get orders of specified user"),
+                           @ApiResponse(code = 404, message = "User with specified ID doesn't exist")})
+    public List<OrderSummary> getOrderSummariesByBuyerId(
+        @PathVariable @ApiParam(value = "Unique ID of existing user", example = "1") Long id) {
+        return orderService.getSummariesByBuyerId(id);
+    }
+
+    @GetMapping(value = "/buyer", params = "view=summary")
+    @ApiOperation(value = "Returns summaries of orders made by currently authenticated user.")
+    public List<OrderSummary> getOrderSummariesByCurrentUser() {
+        return orderService.getSummariesByCurrentUser();
+    }
+
     @GetMapping("/buyer")
     @ApiOperation(value = "Returns list of orders made by currently authenticated user.")
     @JsonView(OrderSimple.class)
@@ -74,11 +192,27 @@ public class OrderController {
         return orderService.add(order);
     }
 
+    @PostMapping(headers = IDEMPOTENCY_KEY_HEADER)
+    @ResponseStatus(HttpStatus.CREATED)
+    @ApiOperation(value = "Adds new order to database once per idempotency key",
+                  notes = "Repeated request with the same key returns the order added by the first one.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Idempotency key is empty or too long"),
+                           @ApiResponse(code = 403, message = "Non-manager is trying to add new order"),
+                           @ApiResponse(code = 422, message = "Order has invalid data or the key was used for a "
+                                                              + "different order")})
+    @JsonView(OrderSimple.class)
+    public Order addOrderOnce(@RequestHeader(IDEMPOTENCY_KEY_HEADER) @ApiParam(value = "Key chosen by the client, "
+        + "the same for every retry of the request") String idempotencyKey,
+                              @RequestBody @ApiParam(value = "Data of the new order") Order order) {
+        return idempotentOrderService.add(idempotencyKey, order);
+    }
+
     @PatchMapping
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @ApiOperation(value = "Modifies status of the order")
     @ApiResponses({@ApiResponse(code = 403, message = "Non-manager is trying to modify order status"),
-                   @ApiResponse(code = 404, message = "Order with specified ID doesn't exist")})
+                   @ApiResponse(code = 404, message = "Order with specified ID doesn't exist"),
+                   @ApiResponse(code = 409, message = "Order was modified since given version")})
     public void modifyOrderStatus(@RequestBody @ApiParam(value = "Id and new status of the order",
             examples = @Example(@ExampleProperty(value = "{ 'id': 1, 'status': SENT }"))) Order order) {
         orderService.update(order);
@@ -95,6 +229,6 @@ public class OrderController {
 
     @InitBinder
     public void addCustomOrderValidator(WebDataBinder webDataBinder) {
-        webDataBinder.addValidators(new OrderValidator(productService));
+        webDataBinder.addValidators(new OrderValidator(checkoutContext, stockLedger));
     }
 }
\ No newline at end of file
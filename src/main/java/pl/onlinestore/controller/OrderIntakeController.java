@@ -0,0 +1,97 @@
+package pl.onlinestore.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import javax.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import pl.onlinestore.catalog.StockLedger;
+import pl.onlinestore.exception.InvalidRequestParameterException;
+import pl.onlinestore.exception.NotFoundException;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.service.CheckoutContext;
+import pl.onlinestore.service.OrderIntake;
+import pl.onlinestore.util.OrderHandle;
+import pl.onlinestore.validation.OrderValidator;
+
+/**
+ * Asynchronous variant of adding orders, chosen by clients with the {@code Prefer: respond-async} header. Without the
+ * header, or with the intake disabled, orders are added by {@link OrderController}. Orders sent with an idempotency key
+ * are not queued, as the queue does not track the keys.
+ */
+@RestController
+@RequestMapping("/api/orders")
+@ConditionalOnProperty(name = "order.intake.async.enabled", havingValue = "true")
+@Api(tags = "Order controller")
+public class OrderIntakeController {
+
+    public static final String PREFER_HEADER = "Prefer";
+    public static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+    public static final String RESPOND_ASYNC = "respond-async";
+
+    private final OrderIntake orderIntake;
+    private final CheckoutContext checkoutContext;
+    private final StockLedger stockLedger;
+
+    @Autowired
+    public OrderIntakeController(OrderIntake orderIntake, CheckoutContext checkoutContext, StockLedger stockLedger) {
+        this.orderIntake = orderIntake;
+        this.checkoutContext = checkoutContext;
+        this.stockLedger = stockLedger;
+    }
+
+    @PostMapping(headers = PREFER_HEADER + "=" + RESPOND_ASYNC)
+    @ApiOperation(value = "Queues new order to be added to database",
+                  notes = "Returns handle of the order, which can be polled until the order is placed or rejected.")
+    @ApiResponses(value = {@ApiResponse(code = 202, message = "Order was queued"),
+                           @ApiResponse(code = 422, message = "Order has invalid data"),
+                           @ApiResponse(code = 503, message = "Too many orders are waiting to be placed")})
+    public ResponseEntity<OrderHandle> queueOrder(
+        @Valid @RequestBody @ApiParam(value = "Data of the new order") Order order) {
+        OrderHandle handle = orderIntake.submit(order);
+        return ResponseEntity.accepted()
+                             .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                                                                  .path("/intake/{id}")
+                                                                  .buildAndExpand(handle.getId()).toUri())
+                             .header(PREFERENCE_APPLIED_HEADER, RESPOND_ASYNC)
+                             .body(handle);
+    }
+
+    @PostMapping(headers = {PREFER_HEADER + "=" + RESPOND_ASYNC, OrderController.IDEMPOTENCY_KEY_HEADER})
+    @ApiOperation(value = "Rejects queueing of an order with an idempotency key",
+                  notes = "Queued orders are not tracked by the key, so such orders have to be added synchronously.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Order with an idempotency key cannot be queued")})
+    public void rejectQueueingOrderOnce() {
+        throw new InvalidRequestParameterException(String.format(
+            "Orders with the %s header cannot be queued. Send them without the %s: %s header.",
+            OrderController.IDEMPOTENCY_KEY_HEADER, PREFER_HEADER, RESPOND_ASYNC));
+    }
+
+    @GetMapping("/intake/{id}")
+    @ApiOperation(value = "Returns state of the queued order of the current user")
+    @ApiResponses(value = {@ApiResponse(code = 404, message = "There is no such order of the current user")})
+    public OrderHandle getOrderHandle(@PathVariable @ApiParam(value = "ID of the order handle") String id,
+                                      Authentication authentication) {
+        return orderIntake.getHandle(id, authentication.getName())
+                          .orElseThrow(() -> new NotFoundException("There is no queued order with id: " + id));
+    }
+
+    @InitBinder
+    public void addCustomOrderValidator(WebDataBinder webDataBinder) {
+        webDataBinder.addValidators(new OrderValidator(checkoutContext, stockLedger));
+    }
+}
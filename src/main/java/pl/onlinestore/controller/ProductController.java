@@ -5,26 +5,51 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
-import javax.persistence.criteria.Predicate;
+import java.util.Locale;
+import java.util.stream.Collectors;
 import javax.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.onlinestore.catalog.CatalogEntry;
+import pl.onlinestore.catalog.CatalogVersion;
+import pl.onlinestore.exception.InvalidRequestParameterException;
 import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ListView;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.model.enums.SalesWindow;
+import pl.onlinestore.service.ProductImportService;
 import pl.onlinestore.service.ProductService;
+import pl.onlinestore.util.Bestseller;
+import pl.onlinestore.util.ProductBatch;
+import pl.onlinestore.util.ProductCursor;
+import pl.onlinestore.util.ProductFilter;
+import pl.onlinestore.util.ProductImportResult;
+import pl.onlinestore.util.ProductListing;
+import pl.onlinestore.util.ProductPage;
+import pl.onlinestore.util.ProductSuggestion;
+import pl.onlinestore.util.StreamingJsonWriter;
+import springfox.documentation.annotations.ApiIgnore;
 
 @RestController
 @RequestMapping("/api/products")
@@ -32,17 +57,40 @@ import pl.onlinestore.service.ProductService;
      description = "Endpoints for getting, creating, editing and removing products offered for sale.")
 public class ProductController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_LIMIT = 50;
+    private static final int MAX_PAGE_LIMIT = 200;
+    private static final int MAX_SUGGESTION_LIMIT = 50;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_BESTSELLER_LIMIT = 50;
+
     private final ProductService productService;
+    private final ProductImportService productImportService;
+    private final CatalogVersion catalogVersion;
+    private final StreamingJsonWriter streamingJsonWriter;
 
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, ProductImportService productImportService,
+                             CatalogVersion catalogVersion, StreamingJsonWriter streamingJsonWriter) {
         this.productService = productService;
+        this.productImportService = productImportService;
+        this.catalogVersion = catalogVersion;
+        this.streamingJsonWriter = streamingJsonWriter;
     }
 
     @GetMapping
-    @ApiOperation(value = "Returns list of all products in the store. Can be filtered by request parameters.")
-    @ApiResponses(value = {@ApiResponse(code = 400, message = "Price parameter is not a number")})
-    public List<Product> getProducts(
+    @ApiOperation(value = "Returns list of all products in the store. Can be filtered by request parameters.",
+                  notes = "When 'limit' or 'after' is given, a single page is returned and the cursor of the next page "
+                          + "is sent in the " + NEXT_CURSOR_HEADER + " response header. When 'q' is given, products "
+                          + "matching all its words are returned from the most relevant one, up to 'limit' products. "
+                          + "When 'facets' is true, the products are wrapped together with price range, price "
+                          + "histogram and stock counts of the whole matching set, regardless of the page.")
+    @ApiResponses(value = {@ApiResponse(code = 200, message = "OK", response = Product.class, responseContainer = "List"),
+                           @ApiResponse(code = 400, message = "Price parameter is not a number or cursor is invalid")})
+    public ResponseEntity<?> getProducts(
+        @RequestParam(value = "q", required = false)
+        @ApiParam(value = "Full-text query matched against product name and description.") String q,
+
         @RequestParam(value = "nameContains", required = false)
         @ApiParam(value = "Filters by product name containing this value.") String name,
 
@@ -56,38 +104,180 @@ public class ProductController {
         @ApiParam(value = "Filters by product price less than this value.", example = "10.99") BigDecimal priceLess,
 
         @RequestParam(value = "priceEqualTo", required = false)
-        @ApiParam(value = "Filters by product price equal to this value.", example = "10.99") BigDecimal priceEqualTo) {
+        @ApiParam(value = "Filters by product price equal to this value.", example = "10.99") BigDecimal priceEqualTo,
 
-            Specification<Product> specification = (root, query, criteriaBuilder) -> {
-                List<Predicate> predicates = new ArrayList<>();
+        @RequestParam(value = "sort", defaultValue = "ID")
+        @ApiParam(value = "Attribute the page is ordered by.") ProductSort sort,
 
-                if (name != null) {
-                    predicates.add(criteriaBuilder.like(root.get("name"), String.format("%%%s%%", name)));
-                }
-                if (desc != null) {
-                    predicates.add(criteriaBuilder.like(root.get("description"), String.format("%%%s%%", desc)));
+        @RequestParam(value = "after", required = false)
+        @ApiParam(value = "Cursor returned with the previous page.") String after,
+
+        @RequestParam(value = "limit", required = false)
+        @ApiParam(value = "Maximum number of products in the page.", example = "50") Integer limit,
+
+        @RequestParam(value = "view", defaultValue = "full")
+        @ApiParam(value = "'summary' returns only id, name, price and the first image of each product.",
+                  allowableValues = "full, summary") String view,
+
+        @RequestParam(value = "facets", defaultValue = "false")
+        @ApiParam(value = "Whether price and stock facets of all matching products are returned.") boolean facets,
+
+        @ApiIgnore WebRequest webRequest) {
+
+            String eTag = catalogVersion.getETag();
+            ProductFilter filter = new ProductFilter(name, desc, priceGreater, priceLess, priceEqualTo);
+
+            if (limit != null && limit < 1) {
+                throw new InvalidRequestParameterException("Page limit must be greater than zero.");
+            }
+            if (q != null && after != null) {
+                throw new InvalidRequestParameterException("Full-text search results cannot be paged with a cursor.");
+            }
+
+            int pageLimit = limit != null ? Math.min(limit, MAX_PAGE_LIMIT) : DEFAULT_PAGE_LIMIT;
+            boolean summary = toListView(view) == ListView.SUMMARY;
+            ProductCursor cursor = after != null ? ProductCursor.decode(after, sort) : null;
+
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+
+            boolean fromSnapshot = productService.isCatalogSnapshotEnabled();
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+            List<?> products;
+
+            if (q != null) {
+                if (fromSnapshot) {
+                    products = toView(productService.searchCatalog(q, filter, pageLimit), summary);
+                } else {
+                    products = summary ? productService.searchProductCards(q, filter, pageLimit)
+                                       : productService.searchProducts(q, filter, pageLimit);
                 }
-                if (priceGreater != null) {
-                    predicates.add(criteriaBuilder.greaterThan(root.get("price"), priceGreater));
+            } else if (limit == null && after == null) {
+                if (fromSnapshot) {
+                    products = toView(productService.getCatalogPage(filter, sort, null, Integer.MAX_VALUE).getProducts(),
+                                      summary);
+                } else {
+                    products = summary ? productService.getProductCards(filter) : productService.getProducts(filter);
                 }
-                if (priceLess != null) {
-                    predicates.add(criteriaBuilder.lessThan(root.get("price"), priceLess));
+            } else {
+                ProductPage<?> page;
+                if (fromSnapshot) {
+                    ProductPage<CatalogEntry> catalogPage = productService.getCatalogPage(filter, sort, cursor, pageLimit);
+                    page = new ProductPage<>(toView(catalogPage.getProducts(), summary), catalogPage.getNextCursor());
+                } else {
+                    page = summary ? productService.getProductCardsPage(filter, sort, cursor, pageLimit)
+                                   : productService.getProductsPage(filter, sort, cursor, pageLimit);
                 }
-                if (priceEqualTo != null) {
-                    predicates.add(criteriaBuilder.equal(root.get("price"), priceEqualTo));
+                if (page.getNextCursor() != null) {
+                    response.header(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
                 }
+                products = page.getProducts();
+            }
+
+            if (facets) {
+                return response.body(new ProductListing<>(products, productService.getProductFacets(q, filter)));
+            }
+            return response.body(products);
+    }
+
+    @GetMapping(params = "stream=true")
+    @ApiOperation(value = "Streams list of all products in the store ordered by ID",
+                  notes = "Products are written to the response as they are read from the database. "
+                          + "Filtering and paging parameters are not applied.")
+    public ResponseEntity<StreamingResponseBody> streamProducts() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).cacheControl(CacheControl.noCache())
+                             .body(streamingJsonWriter.write(productService::streamAll, null));
+    }
+
+    @GetMapping("/suggest")
+    @ApiOperation(value = "Returns products whose name, or one of its words, starts with given prefix",
+                  notes = "Letters are compared without case and diacritics. Suggestions are served from memory.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Limit is not greater than zero")})
+    public List<ProductSuggestion> suggestProducts(
+        @RequestParam("prefix") @ApiParam(value = "Beginning of the product name or its word.", required = true) String prefix,
+
+        @RequestParam(value = "limit", defaultValue = "10")
+        @ApiParam(value = "Maximum number of suggestions.", example = "10") int limit) {
+
+        if (limit < 1) {
+            throw new InvalidRequestParameterException("Suggestion limit must be greater than zero.");
+        }
+        return productService.suggestProducts(prefix, Math.min(limit, MAX_SUGGESTION_LIMIT));
+    }
+
+    @GetMapping("/bestsellers")
+    @ApiOperation(value = "Returns products sold the most within given time window",
+                  notes = "Ranking is kept up to date in memory as orders are placed.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Limit is not greater than zero")})
+    public List<Bestseller> getBestsellers(
+        @RequestParam(value = "window", defaultValue = "DAY")
+        @ApiParam(value = "Time window the sold quantities are counted in.") SalesWindow window,
+
+        @RequestParam(value = "limit", defaultValue = "10")
+        @ApiParam(value = "Maximum number of products.", example = "10") int limit) {
+
+        if (limit < 1) {
+            throw new InvalidRequestParameterException("Bestseller limit must be greater than zero.");
+        }
+        return productService.getBestsellers(window, Math.min(limit, MAX_BESTSELLER_LIMIT));
+    }
 
-                return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
-            };
+    @GetMapping("/batch")
+    @ApiOperation(value = "Returns products with given IDs",
+                  notes = "Products are returned in the order of requested IDs. IDs without existing product are "
+                          + "listed separately. At most " + MAX_BATCH_SIZE + " IDs can be requested at once.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "No IDs or too many IDs were given")})
+    public ResponseEntity<ProductBatch> getProductBatch(
+        @RequestParam("ids") @ApiParam(value = "Comma-separated IDs of products.", example = "1,2,3") List<Long> ids,
+        @ApiIgnore WebRequest webRequest) {
 
-            return productService.getProductsBySpecification(specification);
+        if (ids.isEmpty() || ids.size() > MAX_BATCH_SIZE) {
+            throw new InvalidRequestParameterException(
+                String.format("Between 1 and %d product IDs must be given.", MAX_BATCH_SIZE));
+        }
+
+        String eTag = catalogVersion.getETag();
+        ProductBatch batch = productService.getProductBatch(ids);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(batch);
     }
 
     @GetMapping("/{id}")
     @ApiOperation(value = "Returns a single product by its ID")
     @ApiResponses(value = {@ApiResponse(code = 404, message = "Product with specified ID doesn't exist")})
-    public Product getProductById(@PathVariable @ApiParam(value = "Unique ID of existing product", example = "1") Long id) {
-        return productService.getById(id);
+    public ResponseEntity<Product> getProductById(
+        @PathVariable @ApiParam(value = "Unique ID of existing product", example = "1") Long id,
+        @ApiIgnore WebRequest webRequest) {
+
+        // the version is read before the product, so that a change in between makes the next request load it again
+        String eTag = catalogVersion.getETag();
+        Product product = productService.getById(id);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(product);
+    }
+
+    @GetMapping("/{id}/related")
+    @ApiOperation(value = "Returns products most often bought together with given product",
+                  notes = "Products are ordered by the number of orders they share with the given product.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Limit is not greater than zero"),
+                           @ApiResponse(code = 404, message = "Product with specified ID doesn't exist")})
+    public List<Product> getRelatedProducts(
+        @PathVariable @ApiParam(value = "Unique ID of existing product", example = "1") Long id,
+
+        @RequestParam(value = "limit", defaultValue = "5")
+        @ApiParam(value = "Maximum number of products.", example = "5") int limit) {
+
+        if (limit < 1) {
+            throw new InvalidRequestParameterException("Related product limit must be greater than zero.");
+        }
+        return productService.getRelatedProducts(id, limit);
     }
 
     @PostMapping
@@ -99,10 +289,24 @@ public class ProductController {
         return productService.add(product);
     }
 
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    @ApiOperation(value = "Adds products streamed in the request body as NDJSON or CSV",
+                  notes = "NDJSON contains a single product object per line. CSV has a header row with product "
+                          + "attribute names; multiple images are separated with ';'. Valid rows are added in chunks, "
+                          + "invalid rows are skipped and reported with their number.")
+    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to import products")})
+    public ProductImportResult importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                              @ApiIgnore InputStream body) throws IOException {
+        return productImportService.importProducts(body, contentType);
+    }
+
     @PutMapping
-    @ApiOperation(value = "Updates an existing product")
-    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to update product"),
+    @ApiOperation(value = "Updates an existing product",
+                  notes = "The product has to be sent with the version it was read with.")
+    @ApiResponses(value = {@ApiResponse(code = 400, message = "Version of the product is missing"),
+                           @ApiResponse(code = 403, message = "Non-manager is trying to update product"),
                            @ApiResponse(code = 404, message = "Product with specified ID doesn't exist"),
+                           @ApiResponse(code = 409, message = "Product was modified since given version"),
                            @ApiResponse(code = 422, message = "Updated product has invalid data")})
     public Product updateProduct(@Valid @RequestBody @ApiParam(value = "Updated data of existing product") Product product) {
         return productService.update(product);
@@ -116,4 +320,16 @@ public class ProductController {
     public void deleteProduct(@PathVariable @ApiParam(value = "Unique ID of existing product", example = "1") Long id) {
         productService.delete(id);
     }
-}
\ No newline at end of file
+
+    private static ListView toListView(String view) {
+        try {
+            return ListView.valueOf(view.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestParameterException("Unknown list view: " + view);
+        }
+    }
+
+    private static List<?> toView(List<CatalogEntry> entries, boolean summary) {
+        return summary ? entries.stream().map(CatalogEntry::toCard).collect(Collectors.toList()) : entries;
+    }
+}
@@ -11,6 +11,8 @@ import javax.validation.Valid;
 import javax.validation.groups.Default;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,10 +23,12 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import pl.onlinestore.model.User;
 import pl.onlinestore.service.UserService;
 import pl.onlinestore.util.JsonViews.UserDetailed;
 import pl.onlinestore.util.JsonViews.UserSimple;
+import pl.onlinestore.util.StreamingJsonWriter;
 import pl.onlinestore.util.ValidationGroups;
 
 @RestController
@@ -33,10 +37,12 @@ import pl.onlinestore.util.ValidationGroups;
 public class UserController {
 
     private final UserService userService;
+    private final StreamingJsonWriter streamingJsonWriter;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, StreamingJsonWriter streamingJsonWriter) {
         this.userService = userService;
+        this.streamingJsonWriter = streamingJsonWriter;
     }
 
     @GetMapping
@@ -47,6 +53,15 @@ public class UserController {
         return userService.getAll();
     }
 
+    @GetMapping(params = "stream=true")
+    @ApiOperation(value = "Streams list of all registered customers",
+                  notes = "Customers are written to the response as they are read from the database.")
+    @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to get all users")})
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                             .body(streamingJsonWriter.write(userService::streamAll, UserDetailed.class));
+    }
+
     @GetMapping("/{id}")
     @ApiOperation(value = "Returns a single registered customer by his ID")
     @ApiResponses(value = {@ApiResponse(code = 403, message = "Non-manager is trying to get a user"),
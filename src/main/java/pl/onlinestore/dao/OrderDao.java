@@ -1,12 +1,27 @@
 package pl.onlinestore.dao;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import pl.onlinestore.model.Order;
+import pl.onlinestore.util.OrderSummary;
+
+public interface OrderDao extends CrudRepository<Order, Long>, JpaSpecificationExecutor<Order>, OrderDaoCustom {
 
-public interface OrderDao extends CrudRepository<Order, Long> {
+    String ORDER_SUMMARY_SELECT =
+        "select new pl.onlinestore.util.OrderSummary(o.id, o.status, o.time, o.total, count(i)) "
+        + "from Transaction o join o.items i ";
+    String ORDER_SUMMARY_GROUP_BY = "group by o.id, o.status, o.time, o.total ";
 
     @Override
     @EntityGraph(attributePaths = {"buyer", "buyer.roles", "items", "items.product"})
@@ -16,6 +31,27 @@ public interface OrderDao extends CrudRepository<Order, Long> {
     @EntityGraph(attributePaths = {"buyer", "buyer.roles", "items", "items.product"})
     Iterable<Order> findAll();
 
+    @Override
+    @EntityGraph(attributePaths = {"buyer", "buyer.roles", "items", "items.product"})
+    Iterable<Order> findAllById(Iterable<Long> ids);
+
     @EntityGraph(attributePaths = {"items", "items.product", "items.product.images"})
     List<Order> getOrdersByBuyerId(Long buyerId);
+
+    @Query(ORDER_SUMMARY_SELECT + ORDER_SUMMARY_GROUP_BY + "order by o.id")
+    List<OrderSummary> findAllSummaries();
+
+    @Query(ORDER_SUMMARY_SELECT + "where o.buyer.id = :buyerId " + ORDER_SUMMARY_GROUP_BY + "order by o.id")
+    List<OrderSummary> findSummariesByBuyerId(@Param("buyerId") Long buyerId);
+
+    @Query("select i.order.id, i.product.id from OrderItem i order by i.order.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamProductIdsOfAllOrders();
+
+    @EntityGraph(attributePaths = {"buyer", "items", "items.product", "items.product.images"})
+    List<Order> findByIdIn(Collection<Long> ids);
+
+    @Query("select o.id from Transaction o order by o.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Long> streamAllIds();
 }
\ No newline at end of file
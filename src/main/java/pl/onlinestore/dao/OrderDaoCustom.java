@@ -0,0 +1,16 @@
+package pl.onlinestore.dao;
+
+import java.util.List;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.model.enums.OrderSort;
+
+public interface OrderDaoCustom {
+
+    /**
+     * Returns ids of the orders matching given specification, ordered by given attribute and then by id, skipping
+     * {@code offset} first ones.
+     */
+    List<Long> findIds(Specification<Order> spec, OrderSort sort, Sort.Direction direction, int offset, int limit);
+}
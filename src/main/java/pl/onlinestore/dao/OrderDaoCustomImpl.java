@@ -0,0 +1,52 @@
+package pl.onlinestore.dao;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.model.enums.OrderSort;
+
+public class OrderDaoCustomImpl implements OrderDaoCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findIds(Specification<Order> spec, OrderSort sort, Sort.Direction direction, int offset,
+                              int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Order> root = query.from(Order.class);
+        Path<Long> id = root.get("id");
+
+        query.select(id);
+        if (spec != null) {
+            Predicate specPredicate = spec.toPredicate(root, query, criteriaBuilder);
+            if (specPredicate != null) {
+                query.where(specPredicate);
+            }
+        }
+
+        if (sort == OrderSort.ID) {
+            query.orderBy(toOrder(criteriaBuilder, id, direction));
+        } else {
+            query.orderBy(toOrder(criteriaBuilder, root.get(sort.getAttribute()), direction),
+                          toOrder(criteriaBuilder, id, direction));
+        }
+
+        return entityManager.createQuery(query).setFirstResult(offset).setMaxResults(limit).getResultList();
+    }
+
+    private static javax.persistence.criteria.Order toOrder(CriteriaBuilder criteriaBuilder, Expression<?> expression,
+                                                           Sort.Direction direction) {
+        return direction.isAscending() ? criteriaBuilder.asc(expression) : criteriaBuilder.desc(expression);
+    }
+}
@@ -1,13 +1,19 @@
 package pl.onlinestore.dao;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import pl.onlinestore.model.Product;
 
-public interface ProductDao extends CrudRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductDao extends CrudRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductDaoCustom {
 
     @Override
     @EntityGraph(attributePaths = "images")
@@ -20,4 +26,8 @@ public interface ProductDao extends CrudRepository<Product, Long>, JpaSpecificat
     @Override
     @EntityGraph(attributePaths = "images")
     List<Product> findAll(Specification<Product> spec);
-}
\ No newline at end of file
+
+    @Query("select p.id from Product p order by p.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Long> streamAllIds();
+}
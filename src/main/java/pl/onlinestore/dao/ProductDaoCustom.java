@@ -0,0 +1,30 @@
+package pl.onlinestore.dao;
+
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.jpa.domain.Specification;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.util.ProductCard;
+import pl.onlinestore.util.ProductCursor;
+import pl.onlinestore.util.ProductFacets;
+
+public interface ProductDaoCustom {
+
+    List<Long> findIdsAfter(Specification<Product> spec, ProductSort sort, ProductCursor after, int limit);
+
+    List<ProductCard> findCards(Specification<Product> spec);
+
+    ProductFacets countFacets(Specification<Product> spec);
+
+    /**
+     * Subtracts given quantities from stock of the products, each one only if enough of it is left, and returns ids of
+     * the products that were not decremented. Must be called inside a transaction.
+     */
+    List<Long> decrementStock(Map<Long, Integer> quantities);
+
+    /**
+     * Adds given quantities back to stock of the products. Must be called inside a transaction.
+     */
+    void incrementStock(Map<Long, Integer> quantities);
+}
@@ -0,0 +1,171 @@
+package pl.onlinestore.dao;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import org.hibernate.Session;
+import org.springframework.data.jpa.domain.Specification;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.util.ProductCard;
+import pl.onlinestore.util.ProductCursor;
+import pl.onlinestore.util.ProductFacets;
+
+public class ProductDaoCustomImpl implements ProductDaoCustom {
+
+    private static final String DECREMENT_STOCK =
+        "UPDATE product SET quantity = quantity - ?, version = version + 1 WHERE id = ? AND quantity >= ?";
+    private static final String INCREMENT_STOCK =
+        "UPDATE product SET quantity = quantity + ?, version = version + 1 WHERE id = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Long> findIdsAfter(Specification<Product> spec, ProductSort sort, ProductCursor after, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        Path<Long> id = root.get("id");
+        List<Predicate> predicates = new ArrayList<>();
+
+        if (spec != null) {
+            Predicate specPredicate = spec.toPredicate(root, query, criteriaBuilder);
+            if (specPredicate != null) {
+                predicates.add(specPredicate);
+            }
+        }
+
+        if (after != null) {
+            if (sort == ProductSort.ID) {
+                predicates.add(criteriaBuilder.greaterThan(id, after.getId()));
+            } else {
+                Expression<Comparable<Object>> key = root.get(sort.getAttribute());
+                Comparable<Object> lastValue = (Comparable<Object>) after.getValue();
+                predicates.add(criteriaBuilder.or(
+                    criteriaBuilder.greaterThan(key, lastValue),
+                    criteriaBuilder.and(criteriaBuilder.equal(key, lastValue), criteriaBuilder.greaterThan(id, after.getId()))));
+            }
+        }
+
+        query.select(id).where(predicates.toArray(new Predicate[0]));
+        if (sort == ProductSort.ID) {
+            query.orderBy(criteriaBuilder.asc(id));
+        } else {
+            query.orderBy(criteriaBuilder.asc(root.get(sort.getAttribute())), criteriaBuilder.asc(id));
+        }
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<ProductCard> findCards(Specification<Product> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductCard> query = criteriaBuilder.createQuery(ProductCard.class);
+        Root<Product> root = query.from(Product.class);
+
+        // the first image by name, selected without joining the rows of every image to the listing
+        Subquery<String> firstImage = query.subquery(String.class);
+        Join<Product, String> image = firstImage.correlate(root).join("images");
+        firstImage.select(criteriaBuilder.least(image.as(String.class)));
+        query.select(criteriaBuilder.construct(ProductCard.class, root.get("id"), root.get("name"),
+                                               root.get("price"), firstImage));
+        query.orderBy(criteriaBuilder.asc(root.get("id")));
+
+        if (spec != null) {
+            Predicate specPredicate = spec.toPredicate(root, query, criteriaBuilder);
+            if (specPredicate != null) {
+                query.where(specPredicate);
+            }
+        }
+
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public ProductFacets countFacets(Specification<Product> spec) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<Product> root = query.from(Product.class);
+        Path<BigDecimal> price = root.get("price");
+        Predicate inStock = criteriaBuilder.greaterThan(root.get("quantity"), 0);
+
+        query.multiselect(price,
+                          criteriaBuilder.sum(criteriaBuilder.<Long>selectCase().when(inStock, 1L).otherwise(0L)),
+                          criteriaBuilder.sum(criteriaBuilder.<Long>selectCase().when(inStock, 0L).otherwise(1L)))
+             .groupBy(price);
+
+        if (spec != null) {
+            Predicate specPredicate = spec.toPredicate(root, query, criteriaBuilder);
+            if (specPredicate != null) {
+                query.where(specPredicate);
+            }
+        }
+
+        ProductFacets.Builder facets = ProductFacets.builder();
+        for (Object[] row : entityManager.createQuery(query).getResultList()) {
+            facets.add((BigDecimal) row[0], ((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+        }
+        return facets.build();
+    }
+
+    @Override
+    public List<Long> decrementStock(Map<Long, Integer> quantities) {
+        return updateStock(DECREMENT_STOCK, quantities, true);
+    }
+
+    @Override
+    public void incrementStock(Map<Long, Integer> quantities) {
+        updateStock(INCREMENT_STOCK, quantities, false);
+    }
+
+    /**
+     * Runs the statement for every product in one JDBC batch, detaches the products loaded in the persistence context,
+     * so that they are read again with the new stock, and returns ids of the products whose row was not updated.
+     * A row counts as updated only when the driver reports exactly one updated row, so that a batch without update
+     * counts ({@link java.sql.Statement#SUCCESS_NO_INFO}) never lets an unchecked decrement through.
+     */
+    private List<Long> updateStock(String sql, Map<Long, Integer> quantities, boolean conditional) {
+        entityManager.flush();
+
+        List<Long> ids = new ArrayList<>(quantities.keySet());
+        int[] updatedRows = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (Long id : ids) {
+                    statement.setInt(1, quantities.get(id));
+                    statement.setLong(2, id);
+                    if (conditional) {
+                        statement.setInt(3, quantities.get(id));
+                    }
+                    statement.addBatch();
+                }
+                return statement.executeBatch();
+            }
+        });
+
+        List<Long> notUpdated = new ArrayList<>();
+        for (int position = 0; position < ids.size(); position++) {
+            Long id = ids.get(position);
+            if (updatedRows[position] != 1) {
+                notUpdated.add(id);
+            }
+
+            // returns the loaded product, or otherwise an uninitialized proxy, without reading it
+            entityManager.detach(entityManager.getReference(Product.class, id));
+        }
+        return notUpdated;
+    }
+}
@@ -1,7 +1,13 @@
 package pl.onlinestore.dao;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 import java.util.Optional;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import pl.onlinestore.model.User;
 
@@ -17,4 +23,12 @@ public interface UserDao extends CrudRepository<User, Long> {
     @Override
     @EntityGraph(attributePaths = "roles")
     Iterable<User> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "roles")
+    Iterable<User> findAllById(Iterable<Long> ids);
+
+    @Query("select u.id from Customer u order by u.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<Long> streamAllIds();
 }
\ No newline at end of file
@@ -5,37 +5,97 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+import pl.onlinestore.service.OptimisticLockRetryExecutor;
 
 @ControllerAdvice
 public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private final OptimisticLockRetryExecutor retryExecutor;
+
+    @Autowired
+    public ControllerExceptionHandler(OptimisticLockRetryExecutor retryExecutor) {
+        this.retryExecutor = retryExecutor;
+    }
+
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<String> handleNotFoundException(NotFoundException e) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
     }
 
+    @ExceptionHandler(InvalidRequestParameterException.class)
+    public ResponseEntity<String> handleInvalidRequestParameterException(InvalidRequestParameterException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+        retryExecutor.recordConflict(e, "rejected");
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                             .body("The data was modified in the meantime. Reload it and try again.");
+    }
+
+    @ExceptionHandler(OrderIntakeFullException.class)
+    public ResponseEntity<String> handleOrderIntakeFullException(OrderIntakeFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, "1")
+                             .body(e.getMessage());
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Object> handleInsufficientStockException(InsufficientStockException e) {
+        List<Map<String, String>> errorList = new ArrayList<>();
+        e.getFieldErrors().forEach((field, error) -> errorList.add(toErrorMap(field, error)));
+
+        return toUnprocessableEntity(errorList);
+    }
+
+    @ExceptionHandler(InvalidOrderException.class)
+    public ResponseEntity<Object> handleInvalidOrderException(InvalidOrderException e) {
+        return toUnprocessableEntity(e.getBindingResult());
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex,
                                                                   HttpHeaders headers, HttpStatus status,
                                                                   WebRequest request) {
+        return toUnprocessableEntity(ex.getBindingResult());
+    }
+
+    private ResponseEntity<Object> toUnprocessableEntity(BindingResult bindingResult) {
         List<Map<String, String>> errorList = new ArrayList<>();
 
-        for (FieldError fieldError : ex.getBindingResult().getFieldErrors()) {
-            Map<String, String> errorMap = new HashMap<>();
-            errorMap.put("field", fieldError.getField());
-            errorMap.put("error", fieldError.getDefaultMessage());
-            errorList.add(errorMap);
+        for (FieldError fieldError : bindingResult.getFieldErrors()) {
+            errorList.add(toErrorMap(fieldError.getField(), fieldError.getDefaultMessage()));
         }
 
+        return toUnprocessableEntity(errorList);
+    }
+
+    private Map<String, String> toErrorMap(String field, String error) {
+        Map<String, String> errorMap = new HashMap<>();
+        errorMap.put("field", field);
+        errorMap.put("error", error);
+        return errorMap;
+    }
+
+    private ResponseEntity<Object> toUnprocessableEntity(List<Map<String, String>> errorList) {
         Map<String, List<Map<String, String>>> output = Collections.singletonMap("errors", errorList);
 
         return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(output);
@@ -0,0 +1,17 @@
+package pl.onlinestore.exception;
+
+import java.util.Map;
+
+public class InsufficientStockException extends RuntimeException {
+
+    private final Map<String, String> fieldErrors;
+
+    public InsufficientStockException(Map<String, String> fieldErrors) {
+        super("Ordered products are not in stock anymore.");
+        this.fieldErrors = fieldErrors;
+    }
+
+    public Map<String, String> getFieldErrors() {
+        return fieldErrors;
+    }
+}
@@ -0,0 +1,17 @@
+package pl.onlinestore.exception;
+
+import org.springframework.validation.BindingResult;
+
+public class InvalidOrderException extends RuntimeException {
+
+    private final BindingResult bindingResult;
+
+    public InvalidOrderException(BindingResult bindingResult) {
+        super("Order has invalid data.");
+        this.bindingResult = bindingResult;
+    }
+
+    public BindingResult getBindingResult() {
+        return bindingResult;
+    }
+}
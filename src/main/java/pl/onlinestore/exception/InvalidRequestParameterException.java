@@ -0,0 +1,8 @@
+package pl.onlinestore.exception;
+
+public class InvalidRequestParameterException extends RuntimeException {
+
+    public InvalidRequestParameterException(String message) {
+        super(message);
+    }
+}
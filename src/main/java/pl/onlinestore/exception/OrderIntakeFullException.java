@@ -0,0 +1,8 @@
+package pl.onlinestore.exception;
+
+public class OrderIntakeFullException extends RuntimeException {
+
+    public OrderIntakeFullException(String message) {
+        super(message);
+    }
+}
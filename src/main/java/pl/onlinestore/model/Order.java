@@ -1,5 +1,6 @@
 package pl.onlinestore.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
@@ -21,6 +22,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -86,6 +88,16 @@ public class Order {
     @JsonView(OrderSimple.class)
     private OffsetDateTime time;
 
+    @Version
+    @ApiModelProperty(value = "Version of the order data. Status change is rejected if it is not the current one.",
+                      example = "0", position = 8)
+    @JsonView(OrderSimple.class)
+    private Long version;
+
+    @JsonIgnore
+    @ApiModelProperty(hidden = true)
+    private BigDecimal total;
+
     public Long getId() {
         return id;
     }
@@ -153,13 +165,28 @@ public class Order {
         this.time = time;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
-    @ApiModelProperty(readOnly = true, value = "Total cost of the order.")
+    @ApiModelProperty(readOnly = true, value = "Total cost of the order, with prices of the products at the time of "
+                                               + "ordering.")
     @JsonView(OrderSimple.class)
     public BigDecimal getCost() {
-        return items.stream()
-                    .map(orderItem -> orderItem.getProduct().getPrice().multiply(new BigDecimal(orderItem.getQuantity())))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return total;
     }
 
     @Override
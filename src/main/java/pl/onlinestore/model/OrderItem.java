@@ -1,8 +1,11 @@
 package pl.onlinestore.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonView;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import java.math.BigDecimal;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -42,12 +45,21 @@ public class OrderItem {
     @JsonView(OrderSimple.class)
     private Integer quantity;
 
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @ApiModelProperty(value = "Price of the product at the time of ordering.", readOnly = true, example = "11.99")
+    @JsonView(OrderSimple.class)
+    private BigDecimal unitPrice;
+
     @NotNull(message = "Order is null.")
     @ManyToOne
     @JoinColumn(name = "order_id", updatable = false)
     @ApiModelProperty(value = "Order, which this item is part of. Must not be null.", required = true)
     private Order order;
 
+    @JsonIgnore
+    @ApiModelProperty(hidden = true)
+    private boolean stockApplied = true;
+
     public OrderItem() {
     }
 
@@ -80,6 +92,14 @@ public class OrderItem {
         this.quantity = amount;
     }
 
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(BigDecimal unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
     public Order getOrder() {
         return order;
     }
@@ -87,4 +107,12 @@ public class OrderItem {
     public void setOrder(Order order) {
         this.order = order;
     }
+
+    public boolean isStockApplied() {
+        return stockApplied;
+    }
+
+    public void setStockApplied(boolean stockApplied) {
+        this.stockApplied = stockApplied;
+    }
 }
\ No newline at end of file
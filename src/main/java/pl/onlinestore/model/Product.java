@@ -9,26 +9,30 @@ import java.util.Set;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
+import pl.onlinestore.catalog.ProductEntityListener;
 import pl.onlinestore.util.JsonViews.OrderDetailed;
 import pl.onlinestore.util.JsonViews.OrderSimple;
 
 @Entity
+@EntityListeners(ProductEntityListener.class)
 @ApiModel(description = "Product, that is offered to buy in the store.")
 public class Product {
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_sequence")
-    @SequenceGenerator(name = "product_sequence", sequenceName = "product_sequence", allocationSize = 1)
+    @SequenceGenerator(name = "product_sequence", sequenceName = "product_sequence", allocationSize = 50)
     @ApiModelProperty(value = "Unique product identifier", example = "1")
     @JsonView(OrderDetailed.class)
     private Long id;
@@ -62,6 +66,11 @@ public class Product {
                       example = "30", position = 4)
     private Integer quantity;
 
+    @Version
+    @ApiModelProperty(value = "Version of the product data. Required on update, which is rejected if it is not the "
+                              + "current one.", example = "0", position = 6)
+    private Long version;
+
     public Product() {
     }
 
@@ -121,6 +130,14 @@ public class Product {
         this.quantity = quantity;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(getId(), getName(), getDescription(), getImages(), getPrice(), getQuantity());
@@ -0,0 +1,10 @@
+package pl.onlinestore.model.enums;
+
+public enum CheckoutStage {
+    PARSE,
+    RESOLVE_BUYER,
+    LOAD_PRODUCTS,
+    VALIDATE,
+    RESERVE_STOCK,
+    PERSIST
+}
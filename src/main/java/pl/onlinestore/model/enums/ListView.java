@@ -0,0 +1,6 @@
+package pl.onlinestore.model.enums;
+
+public enum ListView {
+    FULL,
+    SUMMARY
+}
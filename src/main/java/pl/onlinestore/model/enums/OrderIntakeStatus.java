@@ -0,0 +1,8 @@
+package pl.onlinestore.model.enums;
+
+public enum OrderIntakeStatus {
+    QUEUED,
+    PLACED,
+    REJECTED,
+    FAILED
+}
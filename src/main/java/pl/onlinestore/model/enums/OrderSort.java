@@ -0,0 +1,17 @@
+package pl.onlinestore.model.enums;
+
+public enum OrderSort {
+    ID("id"),
+    TIME("time"),
+    TOTAL("total");
+
+    private final String attribute;
+
+    OrderSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+}
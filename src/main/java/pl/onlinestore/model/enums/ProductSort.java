@@ -0,0 +1,17 @@
+package pl.onlinestore.model.enums;
+
+public enum ProductSort {
+    ID("id"),
+    PRICE("price"),
+    NAME("name");
+
+    private final String attribute;
+
+    ProductSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+}
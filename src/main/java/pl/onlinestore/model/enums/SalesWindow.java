@@ -0,0 +1,16 @@
+package pl.onlinestore.model.enums;
+
+public enum SalesWindow {
+    DAY(24),
+    WEEK(7 * 24);
+
+    private final int hours;
+
+    SalesWindow(int hours) {
+        this.hours = hours;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+}
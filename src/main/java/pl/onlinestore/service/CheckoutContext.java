@@ -0,0 +1,128 @@
+package pl.onlinestore.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.dao.UserDao;
+import pl.onlinestore.exception.NotFoundException;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.model.User;
+import pl.onlinestore.model.enums.CheckoutStage;
+
+/**
+ * Data of a single checkout, passed through its stages: the order is parsed, its buyer resolved and products loaded,
+ * then the order is validated, its items are taken out of stock and the order is saved. The buyer and the products are
+ * loaded once per checkout, by the first stage that needs them. Durations of the stages are recorded in the
+ * {@value #STAGE_METRIC} metric, tagged with the stage.
+ */
+@Component
+@RequestScope
+public class CheckoutContext {
+
+    static final String STAGE_METRIC = "checkout.stage";
+
+    private final UserDao userDao;
+    private final ProductDao productDao;
+    private final ProductService productService;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, Product> products = new HashMap<>();
+    private final Set<Long> loadedProductIds = new HashSet<>();
+    private User buyer;
+    private long parseStartedAt;
+
+    @Autowired
+    public CheckoutContext(UserDao userDao, ProductDao productDao, ProductService productService,
+                           MeterRegistry meterRegistry) {
+        this.userDao = userDao;
+        this.productDao = productDao;
+        this.productService = productService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Creates context of a checkout made outside of a request, by already known buyer.
+     */
+    CheckoutContext(User buyer, ProductDao productDao, ProductService productService, MeterRegistry meterRegistry) {
+        this((UserDao) null, productDao, productService, meterRegistry);
+        this.buyer = buyer;
+    }
+
+    public void startParsing() {
+        parseStartedAt = System.nanoTime();
+    }
+
+    public void finishParsing() {
+        timer(CheckoutStage.PARSE).record(System.nanoTime() - parseStartedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the currently authenticated user, loading it on the first call.
+     */
+    public User getBuyer() {
+        if (buyer == null) {
+            String email = SecurityContextHolder.getContext().getAuthentication().getName();
+            buyer = time(CheckoutStage.RESOLVE_BUYER, () -> userDao.getUserByEmail(email).orElseThrow(
+                () -> new NotFoundException("Invalid current user authentication.")));
+        }
+        return buyer;
+    }
+
+    /**
+     * Returns existing products with given ids, loading only the ones not requested before in this checkout.
+     */
+    public Map<Long, Product> getProducts(Collection<Long> ids) {
+        Set<Long> notLoadedIds = new HashSet<>(ids);
+        notLoadedIds.removeAll(loadedProductIds);
+
+        if (!notLoadedIds.isEmpty()) {
+            time(CheckoutStage.LOAD_PRODUCTS, () -> productService.getProductsByIds(notLoadedIds).forEach(
+                product -> products.put(product.getId(), product)));
+            loadedProductIds.addAll(notLoadedIds);
+        }
+        return selectProducts(ids);
+    }
+
+    /**
+     * Reads products with given ids from the database again, after their stock was changed, bypassing the cache.
+     */
+    public Map<Long, Product> reloadProducts(Collection<Long> ids) {
+        ids.forEach(products::remove);
+        productDao.findAllById(ids).forEach(product -> products.put(product.getId(), product));
+        loadedProductIds.addAll(ids);
+        return selectProducts(ids);
+    }
+
+    public <T> T time(CheckoutStage stage, Supplier<T> action) {
+        return timer(stage).record(action);
+    }
+
+    public void time(CheckoutStage stage, Runnable action) {
+        timer(stage).record(action);
+    }
+
+    private Map<Long, Product> selectProducts(Collection<Long> ids) {
+        Map<Long, Product> selected = new HashMap<>();
+        for (Long id : ids) {
+            Product product = products.get(id);
+            if (product != null) {
+                selected.put(id, product);
+            }
+        }
+        return selected;
+    }
+
+    private Timer timer(CheckoutStage stage) {
+        return meterRegistry.timer(STAGE_METRIC, "stage", stage.name().toLowerCase());
+    }
+}
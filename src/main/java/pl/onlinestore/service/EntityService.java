@@ -1,6 +1,7 @@
 package pl.onlinestore.service;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface EntityService<T> {
 
@@ -8,6 +9,8 @@ public interface EntityService<T> {
 
     List<T> getAll();
 
+    Stream<T> streamAll();
+
     T add(T object);
 
     T update(T object);
@@ -0,0 +1,240 @@
+package pl.onlinestore.service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.ValidationUtils;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import pl.onlinestore.catalog.StockLedger;
+import pl.onlinestore.exception.IdempotencyKeyReusedException;
+import pl.onlinestore.exception.InvalidOrderException;
+import pl.onlinestore.exception.InvalidRequestParameterException;
+import pl.onlinestore.exception.NotFoundException;
+import pl.onlinestore.model.Address;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.model.User;
+import pl.onlinestore.validation.OrderValidator;
+
+/**
+ * Places orders sent with an idempotency key at most once per key and buyer. A request repeated with the same key gets
+ * the order placed by the first one, without validating it or taking its items out of stock again; if the first one is
+ * still running, the repeated one waits for it. A key repeated with a different order is rejected with
+ * {@link IdempotencyKeyReusedException}. Keys of recent orders are also kept in memory, in front of the table.
+ * Keys of deleted orders are deleted with them, so a request repeated after that places the order again.
+ */
+@Service
+public class IdempotentOrderService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final String SELECT_PLACED_KEY =
+        "SELECT order_id, request_hash FROM order_idempotency_key WHERE buyer_id = ? AND idempotency_key = ?";
+    private static final String INSERT_KEY = "INSERT INTO order_idempotency_key "
+                                             + "(buyer_id, idempotency_key, order_id, request_hash, created_at) "
+                                             + "VALUES (?, ?, ?, ?, ?)";
+    private static final String DELETE_EXPIRED_KEYS = "DELETE FROM order_idempotency_key WHERE created_at < ?";
+
+    private final OrderService orderService;
+    private final CheckoutContext checkoutContext;
+    private final StockLedger stockLedger;
+    private final SpringValidatorAdapter validator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration keyTtl;
+    private final Map<String, PlacedKey> recentKeys;
+    private final ConcurrentMap<String, CompletableFuture<PlacedKey>> placingKeys = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public IdempotentOrderService(OrderService orderService, CheckoutContext checkoutContext, StockLedger stockLedger,
+                                  Validator validator, JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${order.idempotency.key-ttl:PT24H}") Duration keyTtl,
+                                  @Value("${order.idempotency.cache-size:10000}") int cacheSize) {
+        this.orderService = orderService;
+        this.checkoutContext = checkoutContext;
+        this.stockLedger = stockLedger;
+        this.validator = new SpringValidatorAdapter(validator);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.keyTtl = keyTtl;
+        this.recentKeys = new LinkedHashMap<String, PlacedKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PlacedKey> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the order placed with given key by the current user, or validates and places given order, throwing
+     * {@link InvalidOrderException} if it is invalid. Orders that were not placed do not use up the key.
+     */
+    public Order add(String key, Order order) {
+        if (key.trim().isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestParameterException(
+                String.format("Idempotency key must have from 1 to %d characters.", MAX_KEY_LENGTH));
+        }
+
+        User buyer = checkoutContext.getBuyer();
+        String buyerKey = buyer.getId() + ":" + key;
+        String requestHash = hash(order);
+
+        while (true) {
+            PlacedKey placedKey = findPlacedKey(buyer.getId(), key, buyerKey);
+            if (placedKey != null) {
+                Order placed = findPlacedOrder(buyerKey, placedKey, requestHash);
+                if (placed != null) {
+                    return placed;
+                }
+            }
+
+            CompletableFuture<PlacedKey> placing = new CompletableFuture<>();
+            CompletableFuture<PlacedKey> concurrent = placingKeys.putIfAbsent(buyerKey, placing);
+            if (concurrent != null) {
+                // completed with null if the concurrent request did not place its order, then this one tries to
+                placedKey = concurrent.join();
+                Order placed = placedKey != null ? findPlacedOrder(buyerKey, placedKey, requestHash) : null;
+                if (placed != null) {
+                    return placed;
+                }
+                continue;
+            }
+
+            try {
+                Order placed = place(buyer, key, requestHash, order);
+                placedKey = new PlacedKey(placed.getId(), requestHash);
+                synchronized (recentKeys) {
+                    recentKeys.put(buyerKey, placedKey);
+                }
+                placing.complete(placedKey);
+                return placed;
+            } catch (DuplicateKeyException e) {
+                // placed with the same key by another instance in the meantime, so its order is returned instead
+            } finally {
+                placing.complete(null);
+                placingKeys.remove(buyerKey, placing);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${order.idempotency.cleanup-interval:PT1H}")
+    public void removeExpiredKeys() {
+        jdbcTemplate.update(DELETE_EXPIRED_KEYS, Timestamp.from(Instant.now().minus(keyTtl)));
+        synchronized (recentKeys) {
+            recentKeys.clear();
+        }
+    }
+
+    private PlacedKey findPlacedKey(Long buyerId, String key, String buyerKey) {
+        synchronized (recentKeys) {
+            PlacedKey placedKey = recentKeys.get(buyerKey);
+            if (placedKey != null) {
+                return placedKey;
+            }
+        }
+
+        List<PlacedKey> placedKeys = jdbcTemplate.query(
+            SELECT_PLACED_KEY, (rs, rowNum) -> new PlacedKey(rs.getLong(1), rs.getString(2)), buyerId, key);
+        return placedKeys.isEmpty() ? null : placedKeys.get(0);
+    }
+
+    /**
+     * Returns the order placed before with the key, or null if it has been deleted since, forgetting its cached key.
+     * Throws {@link IdempotencyKeyReusedException} if the order was placed by a request with a different hash.
+     */
+    private Order findPlacedOrder(String buyerKey, PlacedKey placedKey, String requestHash) {
+        Order placed;
+        try {
+            placed = orderService.getById(placedKey.orderId);
+        } catch (NotFoundException e) {
+            synchronized (recentKeys) {
+                recentKeys.remove(buyerKey, placedKey);
+            }
+            return null;
+        }
+
+        if (placedKey.requestHash != null && !placedKey.requestHash.equals(requestHash)) {
+            throw new IdempotencyKeyReusedException(
+                "Idempotency key was already used for a different order. Send a new key with every new order.");
+        }
+        return placed;
+    }
+
+    /**
+     * Hashes the data of the order sent by the client, with items ordered by their products, so that the same order
+     * has the same hash however its items are ordered.
+     */
+    private static String hash(Order order) {
+        StringBuilder data = new StringBuilder();
+        Address address = order.getDeliveryAddress();
+        if (address != null) {
+            data.append(address.getStreet()).append('\n')
+                .append(address.getPostCode()).append('\n')
+                .append(address.getCity());
+        }
+        data.append('\n').append(order.getPaymentMethod()).append('\n').append(order.getInformation());
+        if (order.getItems() != null) {
+            order.getItems().stream()
+                 .filter(Objects::nonNull)
+                 .map(item -> (item.getProduct() != null ? item.getProduct().getId() : null) + ":"
+                              + item.getQuantity())
+                 .sorted()
+                 .forEach(item -> data.append('\n').append(item));
+        }
+        return DigestUtils.md5DigestAsHex(data.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Order place(User buyer, String key, String requestHash, Order order) {
+        BeanPropertyBindingResult errors = new BeanPropertyBindingResult(order, "order");
+        ValidationUtils.invokeValidator(validator, order, errors);
+        if (!errors.hasErrors()) {
+            ValidationUtils.invokeValidator(new OrderValidator(checkoutContext, stockLedger), order, errors);
+        }
+        if (errors.hasErrors()) {
+            throw new InvalidOrderException(errors);
+        }
+
+        return Objects.requireNonNull(transactionTemplate.execute(status -> {
+            Order placed = orderService.place(order, checkoutContext);
+            // the key references the order row, which is otherwise inserted only on commit
+            entityManager.flush();
+            jdbcTemplate.update(INSERT_KEY, buyer.getId(), key, placed.getId(), requestHash,
+                                Timestamp.from(Instant.now()));
+            return placed;
+        }));
+    }
+
+    private static class PlacedKey {
+
+        private final Long orderId;
+        private final String requestHash;
+
+        PlacedKey(Long orderId, String requestHash) {
+            this.orderId = orderId;
+            this.requestHash = requestHash;
+        }
+    }
+}
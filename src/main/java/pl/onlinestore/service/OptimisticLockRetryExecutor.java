@@ -0,0 +1,77 @@
+package pl.onlinestore.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Retries updates of versioned entities after optimistic locking conflicts and counts the conflicts in the
+ * {@value #CONFLICTS_METRIC} metric, tagged with the conflicting entity and what happened to the update: retried,
+ * exhausted when no attempts were left, or rejected when the conflict was reported to the client.
+ */
+@Component
+public class OptimisticLockRetryExecutor {
+
+    static final String CONFLICTS_METRIC = "entity.version.conflicts";
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public OptimisticLockRetryExecutor(@Value("${optimistic-lock.retry.max-attempts:3}") int maxAttempts,
+                                       @Value("${optimistic-lock.retry.initial-backoff:20ms}") Duration initialBackoff,
+                                       MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the update again after a conflict, up to the configured number of attempts, waiting a random time of up to
+     * twice as long before each next one. The update must read the entity itself and run outside a transaction, so
+     * that every attempt sees the latest committed data.
+     */
+    public <T> T executeWithRetry(Supplier<T> update) {
+        long backoffMillis = initialBackoffMillis;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return update.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    recordConflict(e, "exhausted");
+                    throw e;
+                }
+                recordConflict(e, "retried");
+                backOff(backoffMillis, e);
+                backoffMillis *= 2;
+            }
+        }
+    }
+
+    private void backOff(long backoffMillis, OptimisticLockingFailureException conflict) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis / 2, backoffMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    public void recordConflict(OptimisticLockingFailureException e, String outcome) {
+        String entity = "unknown";
+        if (e instanceof ObjectOptimisticLockingFailureException
+            && ((ObjectOptimisticLockingFailureException) e).getPersistentClassName() != null) {
+            String className = ((ObjectOptimisticLockingFailureException) e).getPersistentClassName();
+            entity = className.substring(className.lastIndexOf('.') + 1);
+        }
+        meterRegistry.counter(CONFLICTS_METRIC, "entity", entity, "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,242 @@
+package pl.onlinestore.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.onlinestore.exception.InsufficientStockException;
+import pl.onlinestore.exception.OrderIntakeFullException;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.model.User;
+import pl.onlinestore.model.enums.OrderIntakeStatus;
+import pl.onlinestore.util.OrderHandle;
+
+/**
+ * Queue of validated orders, placed by a single writer thread in batches, each in one transaction. Clients get a
+ * handle to poll the state of their order with, kept for a while after the order is written. A batch that cannot be
+ * written fails its orders without stopping the writer, and a writer killed by an error is replaced by a new one.
+ */
+@Service
+@ConditionalOnProperty(name = "order.intake.async.enabled", havingValue = "true")
+public class OrderIntake {
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+    private static final Logger log = LoggerFactory.getLogger(OrderIntake.class);
+
+    private final OrderService orderService;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<QueuedOrder> queue;
+    private final int maxBatchSize;
+    private final long handleTtlNanos;
+    private final ConcurrentMap<String, TrackedHandle> handles = new ConcurrentHashMap<>();
+    private volatile Thread writer;
+    private volatile boolean running = true;
+
+    @Autowired
+    public OrderIntake(OrderService orderService, TransactionTemplate transactionTemplate,
+                       @Value("${order.intake.queue-capacity:1000}") int queueCapacity,
+                       @Value("${order.intake.max-batch-size:50}") int maxBatchSize,
+                       @Value("${order.intake.handle-ttl:PT10M}") Duration handleTtl) {
+        this.orderService = orderService;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.handleTtlNanos = handleTtl.toNanos();
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        writer = new Thread(this::writeOrders, "order-intake-writer");
+        writer.setDaemon(true);
+        writer.setUncaughtExceptionHandler((thread, e) -> {
+            log.error("Order intake writer stopped by an error", e);
+            if (running) {
+                start();
+            }
+        });
+        writer.start();
+    }
+
+    /**
+     * Stops taking new orders and waits until the queued ones are written.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join();
+    }
+
+    /**
+     * Queues the order of the current user and returns its handle, or throws {@link OrderIntakeFullException} if there
+     * is no room left in the queue.
+     */
+    public OrderHandle submit(Order order) {
+        User buyer = orderService.getCurrentUser();
+        String id = UUID.randomUUID().toString();
+        TrackedHandle handle = new TrackedHandle(buyer.getEmail(), OrderHandle.queued(id));
+        handles.put(id, handle);
+
+        if (!running || !queue.offer(new QueuedOrder(order, buyer, handle))) {
+            handles.remove(id);
+            throw new OrderIntakeFullException("Too many orders are waiting to be placed. Try again in a moment.");
+        }
+        return handle.current;
+    }
+
+    /**
+     * Returns the handle with given id if it belongs to the user with given email.
+     */
+    public Optional<OrderHandle> getHandle(String id, String buyerEmail) {
+        TrackedHandle handle = handles.get(id);
+        if (handle == null || !handle.buyerEmail.equals(buyerEmail)) {
+            return Optional.empty();
+        }
+        return Optional.of(handle.current);
+    }
+
+    @Scheduled(fixedDelayString = "${order.intake.handle-ttl:PT10M}")
+    public void removeExpiredHandles() {
+        long now = System.nanoTime();
+        handles.values().removeIf(handle -> handle.current.getStatus() != OrderIntakeStatus.QUEUED
+                                            && now - handle.completedAt > handleTtlNanos);
+    }
+
+    private void writeOrders() {
+        List<QueuedOrder> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedOrder first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Failed to write a batch of {} queued orders", batch.size(), e);
+                failQueued(batch);
+            } catch (Error e) {
+                failQueued(batch);
+                throw e;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Places the orders in one transaction and completes their handles once it commits. If the transaction fails,
+     * every order is placed again in its own one, so that a single broken order does not fail the others.
+     */
+    private void write(List<QueuedOrder> batch) {
+        Map<QueuedOrder, OrderHandle> results;
+        try {
+            results = transactionTemplate.execute(status -> {
+                Map<QueuedOrder, OrderHandle> placed = new HashMap<>();
+                batch.forEach(queuedOrder -> placed.put(queuedOrder, place(queuedOrder)));
+                return placed;
+            });
+        } catch (RuntimeException e) {
+            if (batch.size() > 1) {
+                batch.forEach(queuedOrder -> {
+                    queuedOrder.resetIds();
+                    write(Collections.singletonList(queuedOrder));
+                });
+            } else {
+                batch.get(0).handle.fail();
+            }
+            return;
+        }
+
+        results.forEach((queuedOrder, result) -> queuedOrder.handle.complete(result));
+    }
+
+    private static void failQueued(List<QueuedOrder> batch) {
+        batch.stream()
+             .map(queuedOrder -> queuedOrder.handle)
+             .filter(handle -> handle.current.getStatus() == OrderIntakeStatus.QUEUED)
+             .forEach(TrackedHandle::fail);
+    }
+
+    private OrderHandle place(QueuedOrder queuedOrder) {
+        String id = queuedOrder.handle.current.getId();
+        try {
+            Order order = orderService.place(queuedOrder.order, queuedOrder.buyer);
+            return new OrderHandle(id, OrderIntakeStatus.PLACED, order.getId(), Collections.emptyList());
+        } catch (InsufficientStockException e) {
+            List<Map<String, String>> errors = new ArrayList<>();
+            e.getFieldErrors().forEach((field, error) -> {
+                Map<String, String> errorMap = new HashMap<>();
+                errorMap.put("field", field);
+                errorMap.put("error", error);
+                errors.add(errorMap);
+            });
+            return new OrderHandle(id, OrderIntakeStatus.REJECTED, null, errors);
+        }
+    }
+
+    private static class QueuedOrder {
+
+        private final Order order;
+        private final User buyer;
+        private final TrackedHandle handle;
+
+        QueuedOrder(Order order, User buyer, TrackedHandle handle) {
+            this.order = order;
+            this.buyer = buyer;
+            this.handle = handle;
+        }
+
+        /**
+         * Clears identifiers assigned to the order in a transaction that was rolled back, so that it is inserted again.
+         */
+        void resetIds() {
+            order.setId(null);
+            order.setVersion(null);
+            order.getItems().forEach(orderItem -> orderItem.setId(null));
+        }
+    }
+
+    private static class TrackedHandle {
+
+        private final String buyerEmail;
+        private volatile OrderHandle current;
+        private volatile long completedAt;
+
+        TrackedHandle(String buyerEmail, OrderHandle current) {
+            this.buyerEmail = buyerEmail;
+            this.current = current;
+        }
+
+        void complete(OrderHandle result) {
+            current = result;
+            completedAt = System.nanoTime();
+        }
+
+        void fail() {
+            complete(new OrderHandle(current.getId(), OrderIntakeStatus.FAILED, null, Collections.emptyList()));
+        }
+    }
+}
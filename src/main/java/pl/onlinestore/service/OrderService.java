@@ -1,37 +1,80 @@
 package pl.onlinestore.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pl.onlinestore.catalog.OrderDeletedEvent;
+import pl.onlinestore.catalog.OrderPlacedEvent;
+import pl.onlinestore.catalog.ProductCache;
+import pl.onlinestore.catalog.ProductChangedEvent;
+import pl.onlinestore.catalog.StockLedger;
 import pl.onlinestore.dao.OrderDao;
 import pl.onlinestore.dao.ProductDao;
 import pl.onlinestore.dao.UserDao;
+import pl.onlinestore.exception.InsufficientStockException;
 import pl.onlinestore.exception.NotFoundException;
 import pl.onlinestore.model.Order;
 import pl.onlinestore.model.OrderItem;
 import pl.onlinestore.model.Product;
 import pl.onlinestore.model.User;
+import pl.onlinestore.model.enums.CheckoutStage;
+import pl.onlinestore.model.enums.OrderSort;
 import pl.onlinestore.model.enums.OrderStatus;
+import pl.onlinestore.util.ChunkedStream;
+import pl.onlinestore.util.OrderFilter;
+import pl.onlinestore.util.OrderPage;
+import pl.onlinestore.util.OrderSummary;
 
 import javax.persistence.EntityNotFoundException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService implements EntityService<Order> {
 
+    private static final int STREAM_CHUNK_SIZE = 100;
+
     private final OrderDao orderDao;
     private final ProductDao productDao;
     private final UserDao userDao;
+    private final ProductCache productCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OptimisticLockRetryExecutor retryExecutor;
+    private final StockLedger stockLedger;
+    private final ProductService productService;
+    private final CheckoutContext checkoutContext;
+    private final MeterRegistry meterRegistry;
 
     @Autowired
-    public OrderService(OrderDao orderDao, ProductDao productDao, UserDao userDao) {
+    public OrderService(OrderDao orderDao, ProductDao productDao, UserDao userDao, ProductCache productCache,
+                        ApplicationEventPublisher eventPublisher, OptimisticLockRetryExecutor retryExecutor,
+                        StockLedger stockLedger, ProductService productService, CheckoutContext checkoutContext,
+                        MeterRegistry meterRegistry) {
         this.orderDao = orderDao;
         this.productDao = productDao;
         this.userDao = userDao;
+        this.productCache = productCache;
+        this.eventPublisher = eventPublisher;
+        this.retryExecutor = retryExecutor;
+        this.stockLedger = stockLedger;
+        this.productService = productService;
+        this.checkoutContext = checkoutContext;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -47,14 +90,30 @@ public class OrderService implements EntityService<Order> {
         return orderDao.getOrdersByBuyerId(buyerId);
     }
 
+    public List<OrderSummary> getSummariesByBuyerId(Long buyerId) {
+        if (!userDao.existsById(buyerId)) {
+            throw new NotFoundException("There is no buyer with id: " + buyerId);
+        }
+
+        return orderDao.findSummariesByBuyerId(buyerId);
+    }
+
     public List<Order> getByCurrentUser() {
+        return orderDao.getOrdersByBuyerId(getCurrentUser().getId());
+    }
+
+    public List<OrderSummary> getSummariesByCurrentUser() {
+        return orderDao.findSummariesByBuyerId(getCurrentUser().getId());
+    }
+
+    public User getCurrentUser() {
         Optional<User> currentUser = userDao.getUserByEmail(SecurityContextHolder.getContext().getAuthentication().getName());
 
         if (!currentUser.isPresent()) {
             throw new NotFoundException("Invalid current user authentication.");
         }
 
-        return orderDao.getOrdersByBuyerId(currentUser.get().getId());
+        return currentUser.get();
     }
 
     @Override
@@ -64,34 +123,185 @@ public class OrderService implements EntityService<Order> {
         return orders;
     }
 
+    /**
+     * Returns a page of the orders matching given filter together with the number of all of them. Ids of the page are
+     * selected first, so that the orders with their items and buyers are fetched only for that page.
+     */
+    public OrderPage getPage(OrderFilter filter, OrderSort sort, Sort.Direction direction, int page, int size) {
+        Specification<Order> spec = filter.toSpecification();
+        List<Long> ids = orderDao.findIds(spec, sort, direction, page * size, size);
+        if (ids.isEmpty()) {
+            return new OrderPage(new ArrayList<>(), page == 0 ? 0 : orderDao.count(spec));
+        }
+
+        Map<Long, Order> ordersById = new HashMap<>();
+        orderDao.findAllById(ids).forEach(order -> ordersById.put(order.getId(), order));
+        List<Order> orders = ids.stream().map(ordersById::get).filter(Objects::nonNull).collect(Collectors.toList());
+
+        long totalCount = page == 0 && ids.size() < size ? ids.size() : orderDao.count(spec);
+        return new OrderPage(orders, totalCount);
+    }
+
+    public List<OrderSummary> getAllSummaries() {
+        return orderDao.findAllSummaries();
+    }
+
+    /**
+     * Streams all orders by their ids, loading them with their buyers, items and products in chunks of
+     * {@link #STREAM_CHUNK_SIZE}.
+     */
+    @Override
+    public Stream<Order> streamAll() {
+        return ChunkedStream.of(orderDao.streamAllIds(), STREAM_CHUNK_SIZE, orderDao::findByIdIn, Order::getId);
+    }
+
+    /**
+     * Saves the order and takes its items out of stock in one transaction. Each product is decremented only if enough
+     * of it is still left, so concurrent orders cannot oversell it; otherwise nothing is saved. Stock of hot products is
+     * taken from the {@link StockLedger} and subtracted in the database later. The buyer and products loaded by the
+     * validation of the order in the same request are not loaded again. Items are saved with the current prices of
+     * their products, so that the order costs the same after the products are repriced.
+     */
     @Override
+    @Transactional
     public Order add(Order object) {
-        Optional<User> currentUser = userDao.getUserByEmail(SecurityContextHolder.getContext().getAuthentication().getName());
+        return place(object, checkoutContext);
+    }
 
-        if (!currentUser.isPresent()) {
-            throw new NotFoundException("Invalid current user authentication.");
-        }
+    /**
+     * Places the order of given buyer outside of a request, see {@link #place(Order, CheckoutContext)}.
+     */
+    public Order place(Order object, User buyer) {
+        return place(object, new CheckoutContext(buyer, productDao, productService, meterRegistry));
+    }
 
+    /**
+     * Takes items of the order out of stock and saves it, or throws {@link InsufficientStockException} and leaves the
+     * stock as it was, so that other orders can still be saved in the same transaction. Must be called inside one.
+     */
+    public Order place(Order object, CheckoutContext checkout) {
         Map<Long, Integer> orderedProductsQuantitiesMap = object.getItems().stream().collect(
             Collectors.toMap(orderItem -> orderItem.getProduct().getId(), OrderItem::getQuantity));
 
-        Iterable<Product> orderedProducts = productDao.findAllById(orderedProductsQuantitiesMap.keySet());
-        orderedProducts
-            .forEach(product -> product.setQuantity(product.getQuantity() - orderedProductsQuantitiesMap.get(product.getId())));
-        productDao.saveAll(orderedProducts);
+        Map<Long, Integer> hotProductsQuantitiesMap = new HashMap<>();
+        Map<Long, Integer> otherProductsQuantitiesMap = new HashMap<>();
+        orderedProductsQuantitiesMap.forEach((productId, quantity) -> {
+            if (stockLedger.isHot(productId)) {
+                hotProductsQuantitiesMap.put(productId, quantity);
+            } else {
+                otherProductsQuantitiesMap.put(productId, quantity);
+            }
+        });
+
+        User buyer = checkout.getBuyer();
+        Map<Long, Product> orderedProducts = checkout.getProducts(orderedProductsQuantitiesMap.keySet());
+        if (orderedProducts.size() != orderedProductsQuantitiesMap.size()) {
+            List<Long> notExistingProductIds = new ArrayList<>(orderedProductsQuantitiesMap.keySet());
+            notExistingProductIds.removeAll(orderedProducts.keySet());
+            throw new InsufficientStockException(getStockErrors(object, notExistingProductIds, checkout));
+        }
+
+        List<Long> notInStockProductIds = checkout.time(
+            CheckoutStage.RESERVE_STOCK, () -> takeOutOfStock(otherProductsQuantitiesMap, hotProductsQuantitiesMap));
+        if (!notInStockProductIds.isEmpty()) {
+            throw new InsufficientStockException(getStockErrors(object, notInStockProductIds, checkout));
+        }
+
+        productCache.invalidate(otherProductsQuantitiesMap.keySet());
+        checkout.reloadProducts(otherProductsQuantitiesMap.keySet()).values().forEach(product -> {
+            orderedProducts.put(product.getId(), product);
+            eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.SAVED));
+        });
+
+        return checkout.time(CheckoutStage.PERSIST, () -> {
+            BigDecimal total = BigDecimal.ZERO;
+            for (OrderItem orderItem : object.getItems()) {
+                Long productId = orderItem.getProduct().getId();
+                orderItem.setStockApplied(!hotProductsQuantitiesMap.containsKey(productId));
+                orderItem.setUnitPrice(orderedProducts.get(productId).getPrice());
+                total = total.add(orderItem.getUnitPrice().multiply(BigDecimal.valueOf(orderItem.getQuantity())));
+            }
+            object.setTotal(total);
+            object.setBuyer(buyer);
+            object.setStatus(OrderStatus.CREATED);
+            object.setVersion(null);
+            Order order = orderDao.save(object);
+            eventPublisher.publishEvent(new OrderPlacedEvent(orderedProductsQuantitiesMap));
+            return order;
+        });
+    }
+
+    /**
+     * Decrements stock of the products in the database and reserves stock of the hot ones in the ledger, and returns
+     * ids of the products that are not in stock in the ordered quantity. If there are any, the stock is left as it was.
+     */
+    private List<Long> takeOutOfStock(Map<Long, Integer> otherProductsQuantitiesMap,
+                                      Map<Long, Integer> hotProductsQuantitiesMap) {
+        List<Long> notInStockProductIds = new ArrayList<>();
+        if (!otherProductsQuantitiesMap.isEmpty()) {
+            notInStockProductIds.addAll(productDao.decrementStock(otherProductsQuantitiesMap));
+        }
+        if (notInStockProductIds.isEmpty()) {
+            notInStockProductIds.addAll(stockLedger.reserve(hotProductsQuantitiesMap));
+        }
+        if (!notInStockProductIds.isEmpty()) {
+            Map<Long, Integer> decrementedQuantitiesMap = new HashMap<>(otherProductsQuantitiesMap);
+            decrementedQuantitiesMap.keySet().removeAll(notInStockProductIds);
+            if (!decrementedQuantitiesMap.isEmpty()) {
+                productDao.incrementStock(decrementedQuantitiesMap);
+            }
+        }
+        return notInStockProductIds;
+    }
+
+    private Map<String, String> getStockErrors(Order order, List<Long> notInStockProductIds, CheckoutContext checkout) {
+        Map<Long, Product> products = checkout.reloadProducts(notInStockProductIds);
+        Map<String, String> stockErrors = new LinkedHashMap<>();
+        int itemIndex = 0;
+
+        for (OrderItem orderItem : order.getItems()) {
+            Long productId = orderItem.getProduct().getId();
+
+            if (notInStockProductIds.contains(productId)) {
+                Product product = products.get(productId);
+                String errorMsg = product != null
+                    ? String.format("Product '%s' is ordered in more quantity (%d) than is in stock (%d).",
+                                    product.getName(), orderItem.getQuantity(),
+                                    stockLedger.isHot(productId) ? stockLedger.getAvailableStock(productId)
+                                                                 : product.getQuantity())
+                    : String.format("Product with ID=%s doesn't exist.", productId);
+                stockErrors.put(product != null ? "items[" + itemIndex + "].quantity" : "items[" + itemIndex + "]",
+                                errorMsg);
+            }
+
+            itemIndex++;
+        }
 
-        object.setBuyer(currentUser.get());
-        object.setStatus(OrderStatus.CREATED);
-        return orderDao.save(object);
+        return stockErrors;
     }
 
+    /**
+     * Changes status of the order. If version of the order is given, it must be the current one; otherwise the change
+     * is retried after a concurrent update of the order.
+     */
     @Override
     public Order update(Order object) {
         if (object.getId() == null || !orderDao.existsById(object.getId())) {
             throw new EntityNotFoundException("There is no order with id: " + object.getId());
         }
 
+        if (object.getVersion() != null) {
+            return updateStatus(object);
+        }
+        return retryExecutor.executeWithRetry(() -> updateStatus(object));
+    }
+
+    private Order updateStatus(Order object) {
         Order order = orderDao.findById(object.getId()).get();
+        if (object.getVersion() != null && !object.getVersion().equals(order.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Order.class, object.getId());
+        }
+
         order.setStatus(object.getStatus());
         return orderDao.save(order);
     }
@@ -99,6 +309,11 @@ public class OrderService implements EntityService<Order> {
     @Override
     public void delete(Long id) {
         Order order = getById(id);
+        // deleting an order does not give its stock back, so stock of hot products ordered in it must be subtracted first
+        stockLedger.flush();
+        Set<Long> productIds = order.getItems().stream().map(item -> item.getProduct().getId())
+                                    .collect(Collectors.toSet());
         orderDao.delete(order);
+        eventPublisher.publishEvent(new OrderDeletedEvent(productIds));
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package pl.onlinestore.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.onlinestore.catalog.ProductEntityListener;
+import pl.onlinestore.catalog.ProductsImportedEvent;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.util.ProductImportResult;
+
+/**
+ * Imports products row by row from a stream, so only a single chunk of products is held in memory at a time.
+ * Each chunk is written in its own transaction; rows rejected by parsing or validation are reported and skipped.
+ * The in-memory indexes are updated once per chunk by a {@link ProductsImportedEvent} rather than for every product.
+ */
+@Service
+public class ProductImportService {
+
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final ProductDao productDao;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectReader jsonReader;
+    private final ObjectReader csvReader;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public ProductImportService(ProductDao productDao, ApplicationEventPublisher eventPublisher,
+                                TransactionTemplate transactionTemplate, Validator validator, ObjectMapper objectMapper) {
+        this.productDao = productDao;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.jsonReader = objectMapper.readerFor(Product.class);
+        this.csvReader = new CsvMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                                        .readerFor(Product.class)
+                                        .with(CsvSchema.emptySchema().withHeader());
+    }
+
+    public ProductImportResult importProducts(InputStream input, MediaType contentType) throws IOException {
+        ObjectReader reader = CSV.includes(contentType) ? csvReader : jsonReader;
+        ProductImportResult result = new ProductImportResult(MAX_REPORTED_ERRORS);
+        List<Product> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        try (MappingIterator<Product> rows = reader.readValues(input)) {
+            int row = 0;
+            while (rows.hasNextValue()) {
+                row++;
+                Product product;
+                try {
+                    product = rows.nextValue();
+                } catch (JsonMappingException e) {
+                    String field = e.getPath().isEmpty() ? null : e.getPath().get(e.getPath().size() - 1).getFieldName();
+                    result.reject(row, field, "Value cannot be read.");
+                    continue;
+                } catch (JsonProcessingException e) {
+                    result.reject(row, null, "Row is malformed, import was stopped.");
+                    break;
+                }
+
+                if (isValid(product, row, result)) {
+                    product.setId(null);
+                    chunk.add(product);
+                    if (chunk.size() == CHUNK_SIZE) {
+                        save(chunk, result);
+                    }
+                }
+            }
+        }
+
+        save(chunk, result);
+        return result;
+    }
+
+    private boolean isValid(Product product, int row, ProductImportResult result) {
+        boolean valid = true;
+        for (ConstraintViolation<Product> violation : validator.validate(product)) {
+            result.reject(row, violation.getPropertyPath().toString(), violation.getMessage());
+            valid = false;
+        }
+        return valid;
+    }
+
+    private void save(List<Product> chunk, ProductImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ProductEntityListener.withoutEvents(() -> {
+                productDao.saveAll(chunk);
+                entityManager.flush();
+            });
+            eventPublisher.publishEvent(new ProductsImportedEvent(new ArrayList<>(chunk)));
+            entityManager.clear();
+        });
+        result.addImported(chunk.size());
+        chunk.clear();
+    }
+}
@@ -1,29 +1,83 @@
 package pl.onlinestore.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import pl.onlinestore.catalog.BestsellerRanking;
+import pl.onlinestore.catalog.CatalogEntry;
+import pl.onlinestore.catalog.CatalogSnapshot;
+import pl.onlinestore.catalog.ProductCache;
+import pl.onlinestore.catalog.ProductCatalog;
+import pl.onlinestore.catalog.ProductCooccurrenceIndex;
+import pl.onlinestore.catalog.ProductPriceIndex;
+import pl.onlinestore.catalog.ProductSearchStrategy;
+import pl.onlinestore.catalog.ProductSuggestIndex;
+import pl.onlinestore.catalog.ProductTextIndex;
 import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.exception.InvalidRequestParameterException;
 import pl.onlinestore.exception.NotFoundException;
 import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.model.enums.SalesWindow;
+import pl.onlinestore.util.Bestseller;
+import pl.onlinestore.util.ChunkedStream;
+import pl.onlinestore.util.ProductBatch;
+import pl.onlinestore.util.ProductCard;
+import pl.onlinestore.util.ProductCursor;
+import pl.onlinestore.util.ProductFacets;
+import pl.onlinestore.util.ProductFilter;
+import pl.onlinestore.util.ProductPage;
+import pl.onlinestore.util.ProductSuggestion;
 
 @Service
 public class ProductService implements EntityService<Product> {
 
+    private static final int MAX_INDEXED_IDS_IN_QUERY = 1000;
+    private static final int STREAM_CHUNK_SIZE = 100;
+
     private final ProductDao productDao;
+    private final ProductTextIndex textIndex;
+    private final ProductPriceIndex priceIndex;
+    private final ProductSearchStrategy searchStrategy;
+    private final ProductSuggestIndex suggestIndex;
+    private final BestsellerRanking bestsellerRanking;
+    private final ProductCooccurrenceIndex cooccurrenceIndex;
+    private final ProductCache productCache;
+    private final ProductCatalog productCatalog;
 
     @Autowired
-    public ProductService(ProductDao productDao) {
+    public ProductService(ProductDao productDao, ProductTextIndex textIndex, ProductPriceIndex priceIndex,
+                          ProductSearchStrategy searchStrategy, ProductSuggestIndex suggestIndex,
+                          BestsellerRanking bestsellerRanking, ProductCooccurrenceIndex cooccurrenceIndex,
+                          ProductCache productCache, ProductCatalog productCatalog) {
         this.productDao = productDao;
+        this.textIndex = textIndex;
+        this.priceIndex = priceIndex;
+        this.searchStrategy = searchStrategy;
+        this.suggestIndex = suggestIndex;
+        this.bestsellerRanking = bestsellerRanking;
+        this.cooccurrenceIndex = cooccurrenceIndex;
+        this.productCache = productCache;
+        this.productCatalog = productCatalog;
     }
 
     @Override
     public Product getById(Long id) {
-        return productDao.findById(id).orElseThrow(() -> new NotFoundException("There is no product with id: " + id));
+        Optional<Product> product = getProductsByIds(Collections.singleton(id)).stream().findFirst();
+        return product.orElseThrow(() -> new NotFoundException("There is no product with id: " + id));
     }
 
     @Override
@@ -33,13 +87,242 @@ public class ProductService implements EntityService<Product> {
         return products;
     }
 
+    /**
+     * Streams all products by their ids, loading them with their images in chunks of {@link #STREAM_CHUNK_SIZE}.
+     */
+    @Override
+    public Stream<Product> streamAll() {
+        return ChunkedStream.of(productDao.streamAllIds(), STREAM_CHUNK_SIZE, productDao::findAllById, Product::getId);
+    }
+
+    public List<Product> getProducts(ProductFilter filter) {
+        Optional<Specification<Product>> specification = toSpecification(filter);
+        return specification.isPresent() ? getProductsBySpecification(specification.get()) : new ArrayList<>();
+    }
+
     public List<Product> getProductsBySpecification(Specification<Product> productSpecification) {
         return productDao.findAll(productSpecification);
     }
 
+    public List<ProductCard> getProductCards(ProductFilter filter) {
+        Optional<Specification<Product>> specification = toSpecification(filter);
+        return specification.isPresent() ? productDao.findCards(specification.get()) : new ArrayList<>();
+    }
+
+    public ProductPage<Product> getProductsPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit) {
+        return getPage(filter, sort, after, limit, this::getProductsByIds, Product::getId,
+                       product -> ProductCursor.after(product, sort));
+    }
+
+    public ProductPage<ProductCard> getProductCardsPage(ProductFilter filter, ProductSort sort, ProductCursor after,
+                                                        int limit) {
+        return getPage(filter, sort, after, limit, ids -> productDao.findCards(withIds(ids)), ProductCard::getId,
+                       card -> ProductCursor.after(card.getId(), card.getPrice(), card.getName(), sort));
+    }
+
+    private <T> ProductPage<T> getPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit,
+                                       Function<List<Long>, Collection<T>> loader, Function<T, Long> idOf,
+                                       Function<T, ProductCursor> cursorOf) {
+        Optional<Specification<Product>> specification = toSpecification(filter);
+        if (!specification.isPresent()) {
+            return new ProductPage<>(new ArrayList<>(), null);
+        }
+
+        List<Long> ids = productDao.findIdsAfter(specification.get(), sort, after, limit + 1);
+        boolean hasNext = ids.size() > limit;
+        if (hasNext) {
+            ids = ids.subList(0, limit);
+        }
+
+        List<T> products = orderByIds(ids, loader.apply(ids), idOf);
+        ProductCursor nextCursor = hasNext && !products.isEmpty() ? cursorOf.apply(products.get(products.size() - 1)) : null;
+
+        return new ProductPage<>(products, nextCursor);
+    }
+
+    public List<Product> searchProducts(String query, ProductFilter filter, int limit) {
+        return search(query, filter, limit, this::getProductsBySpecification, Product::getId);
+    }
+
+    public List<ProductCard> searchProductCards(String query, ProductFilter filter, int limit) {
+        return search(query, filter, limit, productDao::findCards, ProductCard::getId);
+    }
+
+    private <T> List<T> search(String query, ProductFilter filter, int limit,
+                               Function<Specification<Product>, Collection<T>> loader, Function<T, Long> idOf) {
+        List<Long> rankedIds = searchStrategy.search(query, MAX_INDEXED_IDS_IN_QUERY);
+        Optional<Specification<Product>> specification = toSpecification(filter);
+        if (rankedIds.isEmpty() || !specification.isPresent()) {
+            return new ArrayList<>();
+        }
+
+        List<T> products = orderByIds(rankedIds, loader.apply(specification.get().and(withIds(rankedIds))), idOf);
+        return products.size() > limit ? products.subList(0, limit) : products;
+    }
+
+    private static <T> List<T> orderByIds(List<Long> ids, Collection<T> products, Function<T, Long> idOf) {
+        Map<Long, T> productsById = products.stream().collect(Collectors.toMap(idOf, Function.identity()));
+        return ids.stream().map(productsById::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static Specification<Product> withIds(Collection<Long> ids) {
+        return (root, query, criteriaBuilder) -> root.get("id").in(ids);
+    }
+
+    public List<ProductSuggestion> suggestProducts(String prefix, int limit) {
+        return suggestIndex.suggest(prefix, limit);
+    }
+
+    public List<Bestseller> getBestsellers(SalesWindow window, int limit) {
+        Map<Long, Long> soldQuantities = bestsellerRanking.top(window, limit);
+        Map<Long, Product> productsById =
+            getProductsByIds(soldQuantities.keySet()).stream().collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        return soldQuantities.entrySet().stream()
+                             .filter(sold -> productsById.containsKey(sold.getKey()))
+                             .map(sold -> new Bestseller(productsById.get(sold.getKey()), sold.getValue()))
+                             .collect(Collectors.toList());
+    }
+
+    public List<Product> getRelatedProducts(Long id, int limit) {
+        Product product = getById(id);
+        List<Long> relatedIds = Arrays.stream(cooccurrenceIndex.related(product.getId(), limit)).boxed()
+                                      .collect(Collectors.toList());
+        return orderByIds(relatedIds, getProductsByIds(relatedIds), Product::getId);
+    }
+
+    public boolean isCatalogSnapshotEnabled() {
+        return productCatalog.isEnabled();
+    }
+
+    public ProductPage<CatalogEntry> getCatalogPage(ProductFilter filter, ProductSort sort, ProductCursor after, int limit) {
+        long[] candidates = findCandidates(filter);
+        return productCatalog.getSnapshot().list(entry -> contains(candidates, entry.getId()), sort, after, limit);
+    }
+
+    public List<CatalogEntry> searchCatalog(String query, ProductFilter filter, int limit) {
+        CatalogSnapshot snapshot = productCatalog.getSnapshot();
+        long[] candidates = findCandidates(filter);
+
+        return searchStrategy.search(query, MAX_INDEXED_IDS_IN_QUERY).stream()
+                             .filter(id -> contains(candidates, id))
+                             .map(snapshot::findById)
+                             .filter(Objects::nonNull)
+                             .limit(limit)
+                             .collect(Collectors.toList());
+    }
+
+    public ProductFacets getProductFacets(String query, ProductFilter filter) {
+        if (productCatalog.isEnabled()) {
+            long[] candidates = findCandidates(filter);
+            if (query != null) {
+                long[] rankedIds = toSortedArray(searchStrategy.search(query, MAX_INDEXED_IDS_IN_QUERY));
+                candidates = candidates != null ? intersect(candidates, rankedIds) : rankedIds;
+            }
+
+            long[] matchingIds = candidates;
+            return productCatalog.getSnapshot().facets(entry -> contains(matchingIds, entry.getId()));
+        }
+
+        Optional<Specification<Product>> specification = toSpecification(filter);
+        if (!specification.isPresent()) {
+            return ProductFacets.builder().build();
+        }
+        if (query == null) {
+            return productDao.countFacets(specification.get());
+        }
+
+        List<Long> rankedIds = searchStrategy.search(query, MAX_INDEXED_IDS_IN_QUERY);
+        if (rankedIds.isEmpty()) {
+            return ProductFacets.builder().build();
+        }
+        return productDao.countFacets(specification.get().and(withIds(rankedIds)));
+    }
+
+    private Optional<Specification<Product>> toSpecification(ProductFilter filter) {
+        long[] candidates = findCandidates(filter);
+        if (candidates == null) {
+            return Optional.of(filter.toPriceSpecification());
+        }
+        if (candidates.length == 0) {
+            return Optional.empty();
+        }
+        if (candidates.length > MAX_INDEXED_IDS_IN_QUERY) {
+            return Optional.of(filter.toPriceSpecification().and(filter.toTextSpecification()));
+        }
+
+        return Optional.of(withIds(Arrays.stream(candidates).boxed().collect(Collectors.toList())));
+    }
+
+    /**
+     * Returns ids of products matching the filter according to the in-memory indexes, in ascending order, or null when
+     * the filter has no criteria.
+     */
+    private long[] findCandidates(ProductFilter filter) {
+        long[] candidates =
+            priceIndex.search(filter.getPriceGreaterThan(), filter.getPriceLessThan(), filter.getPriceEqualTo());
+        if (!filter.hasTextCriteria()) {
+            return candidates;
+        }
+
+        long[] textMatches = toSortedArray(textIndex.search(filter.getNameContains(), filter.getDescContains()));
+        return candidates != null ? intersect(candidates, textMatches) : textMatches;
+    }
+
+    private static boolean contains(long[] candidates, long id) {
+        return candidates == null || Arrays.binarySearch(candidates, id) >= 0;
+    }
+
+    private static long[] toSortedArray(Collection<Long> ids) {
+        long[] sorted = ids.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long[] intersect(long[] first, long[] second) {
+        long[] common = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int firstPosition = 0;
+        int secondPosition = 0;
+
+        while (firstPosition < first.length && secondPosition < second.length) {
+            if (first[firstPosition] < second[secondPosition]) {
+                firstPosition++;
+            } else if (first[firstPosition] > second[secondPosition]) {
+                secondPosition++;
+            } else {
+                common[size++] = first[firstPosition];
+                firstPosition++;
+                secondPosition++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    public ProductBatch getProductBatch(Collection<Long> ids) {
+        List<Long> requestedIds = ids.stream().distinct().collect(Collectors.toList());
+        List<Product> products = orderByIds(requestedIds, getProductsByIds(requestedIds), Product::getId);
+        Set<Long> foundIds = products.stream().map(Product::getId).collect(Collectors.toSet());
+        List<Long> missingIds = requestedIds.stream().filter(id -> !foundIds.contains(id)).collect(Collectors.toList());
+
+        return new ProductBatch(products, missingIds);
+    }
+
     public Set<Product> getProductsByIds(Iterable<Long> ids) {
-        Set<Product> products = new HashSet<>();
-        productDao.findAllById(ids).forEach(products::add);
+        Set<Long> requestedIds = new HashSet<>();
+        ids.forEach(requestedIds::add);
+
+        Map<Long, Product> cachedProducts = productCache.getAll(requestedIds);
+        Set<Product> products = new HashSet<>(cachedProducts.values());
+        requestedIds.removeAll(cachedProducts.keySet());
+
+        if (!requestedIds.isEmpty()) {
+            long cacheGeneration = productCache.currentGeneration();
+            List<Product> loadedProducts = new ArrayList<>();
+            productDao.findAllById(requestedIds).forEach(loadedProducts::add);
+            productCache.putAll(loadedProducts, cacheGeneration);
+            products.addAll(loadedProducts);
+        }
         return products;
     }
 
@@ -48,18 +331,29 @@ public class ProductService implements EntityService<Product> {
         return productDao.save(object);
     }
 
+    /**
+     * Saves given product if its version is the current one, so that data read before a concurrent update does not
+     * overwrite it.
+     */
     @Override
     public Product update(Product object) {
         if (object.getId() == null || !productDao.existsById(object.getId())) {
             throw new NotFoundException("Product doesn't exist.");
         }
+        if (object.getVersion() == null) {
+            throw new InvalidRequestParameterException("Version of the updated product is required.");
+        }
 
-        return productDao.save(object);
+        Product product = productDao.save(object);
+        productCache.invalidate(product.getId());
+        return product;
     }
 
     @Override
     public void delete(Long id) {
-        Product product = getById(id);
+        Product product = productDao.findById(id)
+                                    .orElseThrow(() -> new NotFoundException("There is no product with id: " + id));
         productDao.delete(product);
+        productCache.invalidate(id);
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -14,10 +15,13 @@ import pl.onlinestore.dao.UserDao;
 import pl.onlinestore.exception.NotFoundException;
 import pl.onlinestore.model.User;
 import pl.onlinestore.model.enums.Role;
+import pl.onlinestore.util.ChunkedStream;
 
 @Service
 public class UserService implements EntityService<User> {
 
+    private static final int STREAM_CHUNK_SIZE = 100;
+
     private final UserDao userDao;
     private final PasswordEncoder passwordEncoder;
 
@@ -43,6 +47,14 @@ public class UserService implements EntityService<User> {
         return users;
     }
 
+    /**
+     * Streams all users by their ids, loading them with their roles in chunks of {@link #STREAM_CHUNK_SIZE}.
+     */
+    @Override
+    public Stream<User> streamAll() {
+        return ChunkedStream.of(userDao.streamAllIds(), STREAM_CHUNK_SIZE, userDao::findAllById, User::getId);
+    }
+
     @Override
     public User add(User object) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
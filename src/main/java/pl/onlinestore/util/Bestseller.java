@@ -0,0 +1,28 @@
+package pl.onlinestore.util;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import pl.onlinestore.model.Product;
+
+@ApiModel(description = "Product together with its quantity sold within a time window.")
+public class Bestseller {
+
+    @ApiModelProperty(value = "Sold product")
+    private final Product product;
+
+    @ApiModelProperty(value = "Quantity of the product sold within the window.", example = "12", position = 1)
+    private final long soldQuantity;
+
+    public Bestseller(Product product, long soldQuantity) {
+        this.product = product;
+        this.soldQuantity = soldQuantity;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public long getSoldQuantity() {
+        return soldQuantity;
+    }
+}
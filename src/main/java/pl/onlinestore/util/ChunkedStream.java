@@ -0,0 +1,55 @@
+package pl.onlinestore.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams entities by streaming their ids and loading them in chunks, so that the associations of a whole chunk are
+ * fetched by one query instead of lazily for every entity. Entities are returned in the order of their ids.
+ */
+public final class ChunkedStream {
+
+    private ChunkedStream() {
+    }
+
+    public static <T> Stream<T> of(Stream<Long> ids, int chunkSize, Function<List<Long>, Iterable<T>> loader,
+                                   Function<T, Long> idGetter) {
+        Iterator<Long> idIterator = ids.iterator();
+        Iterator<List<Long>> chunks = new Iterator<List<Long>>() {
+            @Override
+            public boolean hasNext() {
+                return idIterator.hasNext();
+            }
+
+            @Override
+            public List<Long> next() {
+                if (!idIterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<Long> chunk = new ArrayList<>(chunkSize);
+                while (chunk.size() < chunkSize && idIterator.hasNext()) {
+                    chunk.add(idIterator.next());
+                }
+                return chunk;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                            .flatMap(chunk -> {
+                                Map<Long, T> entitiesById = new HashMap<>();
+                                loader.apply(chunk).forEach(entity -> entitiesById.put(idGetter.apply(entity), entity));
+                                return chunk.stream().map(entitiesById::get).filter(Objects::nonNull);
+                            })
+                            .onClose(ids::close);
+    }
+}
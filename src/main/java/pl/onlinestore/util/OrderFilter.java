@@ -0,0 +1,72 @@
+package pl.onlinestore.util;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import pl.onlinestore.model.Order;
+import pl.onlinestore.model.enums.OrderStatus;
+import pl.onlinestore.model.enums.PaymentMethod;
+
+public class OrderFilter {
+
+    private final OrderStatus status;
+    private final OffsetDateTime placedFrom;
+    private final OffsetDateTime placedBefore;
+    private final Long buyerId;
+    private final PaymentMethod paymentMethod;
+
+    public OrderFilter(OrderStatus status, OffsetDateTime placedFrom, OffsetDateTime placedBefore, Long buyerId,
+                       PaymentMethod paymentMethod) {
+        this.status = status;
+        this.placedFrom = placedFrom;
+        this.placedBefore = placedBefore;
+        this.buyerId = buyerId;
+        this.paymentMethod = paymentMethod;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public OffsetDateTime getPlacedFrom() {
+        return placedFrom;
+    }
+
+    public OffsetDateTime getPlacedBefore() {
+        return placedBefore;
+    }
+
+    public Long getBuyerId() {
+        return buyerId;
+    }
+
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public Specification<Order> toSpecification() {
+        return (root, query, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (status != null) {
+                predicates.add(criteriaBuilder.equal(root.get("status"), status));
+            }
+            if (placedFrom != null) {
+                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("time"), placedFrom));
+            }
+            if (placedBefore != null) {
+                predicates.add(criteriaBuilder.lessThan(root.get("time"), placedBefore));
+            }
+            if (buyerId != null) {
+                predicates.add(criteriaBuilder.equal(root.get("buyer").get("id"), buyerId));
+            }
+            if (paymentMethod != null) {
+                predicates.add(criteriaBuilder.equal(root.get("paymentMethod"), paymentMethod));
+            }
+
+            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
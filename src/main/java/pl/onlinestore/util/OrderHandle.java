@@ -0,0 +1,52 @@
+package pl.onlinestore.util;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import pl.onlinestore.model.enums.OrderIntakeStatus;
+
+@ApiModel(description = "State of an order accepted for asynchronous placing.")
+public class OrderHandle {
+
+    @ApiModelProperty(value = "Identifier to poll the state of the order with.",
+                      example = "0b5a3f8e-6a2e-4c59-9f0e-2f5d8c0b7a41")
+    private final String id;
+
+    @ApiModelProperty(value = "QUEUED until the order is written, then PLACED, REJECTED or FAILED.", position = 1)
+    private final OrderIntakeStatus status;
+
+    @ApiModelProperty(value = "ID of the placed order.", example = "1", position = 2)
+    private final Long orderId;
+
+    @ApiModelProperty(value = "Reasons of rejection, in the same form as errors of invalid orders.", position = 3)
+    private final List<Map<String, String>> errors;
+
+    public OrderHandle(String id, OrderIntakeStatus status, Long orderId, List<Map<String, String>> errors) {
+        this.id = id;
+        this.status = status;
+        this.orderId = orderId;
+        this.errors = errors;
+    }
+
+    public static OrderHandle queued(String id) {
+        return new OrderHandle(id, OrderIntakeStatus.QUEUED, null, Collections.emptyList());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public OrderIntakeStatus getStatus() {
+        return status;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public List<Map<String, String>> getErrors() {
+        return errors;
+    }
+}
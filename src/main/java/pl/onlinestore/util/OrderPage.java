@@ -0,0 +1,23 @@
+package pl.onlinestore.util;
+
+import java.util.List;
+import pl.onlinestore.model.Order;
+
+public class OrderPage {
+
+    private final List<Order> orders;
+    private final long totalCount;
+
+    public OrderPage(List<Order> orders, long totalCount) {
+        this.orders = orders;
+        this.totalCount = totalCount;
+    }
+
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+}
@@ -0,0 +1,54 @@
+package pl.onlinestore.util;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import pl.onlinestore.model.enums.OrderStatus;
+
+@ApiModel(description = "Order attributes shown on the order list.")
+public class OrderSummary {
+
+    @ApiModelProperty(value = "Unique order idenfifier", example = "1")
+    private final Long id;
+
+    @ApiModelProperty(value = "Current status of the order.", position = 1)
+    private final OrderStatus status;
+
+    @ApiModelProperty(value = "Time of making order.", position = 2)
+    private final OffsetDateTime time;
+
+    @ApiModelProperty(value = "Total cost of the order.", position = 3)
+    private final BigDecimal cost;
+
+    @ApiModelProperty(value = "Number of distinct products in the order.", example = "2", position = 4)
+    private final long itemCount;
+
+    public OrderSummary(Long id, OrderStatus status, OffsetDateTime time, BigDecimal cost, long itemCount) {
+        this.id = id;
+        this.status = status;
+        this.time = time;
+        this.cost = cost;
+        this.itemCount = itemCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public OffsetDateTime getTime() {
+        return time;
+    }
+
+    public BigDecimal getCost() {
+        return cost;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,29 @@
+package pl.onlinestore.util;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.util.List;
+import pl.onlinestore.model.Product;
+
+@ApiModel(description = "Products looked up by their IDs.")
+public class ProductBatch {
+
+    @ApiModelProperty(value = "Found products in the order of requested IDs.")
+    private final List<Product> products;
+
+    @ApiModelProperty(value = "Requested IDs without existing product.", position = 1)
+    private final List<Long> missingIds;
+
+    public ProductBatch(List<Product> products, List<Long> missingIds) {
+        this.products = products;
+        this.missingIds = missingIds;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public List<Long> getMissingIds() {
+        return missingIds;
+    }
+}
@@ -0,0 +1,44 @@
+package pl.onlinestore.util;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.math.BigDecimal;
+
+@ApiModel(description = "Product attributes shown on the product list.")
+public class ProductCard {
+
+    @ApiModelProperty(value = "Unique product identifier", example = "1")
+    private final Long id;
+
+    @ApiModelProperty(value = "Name of the product", position = 1)
+    private final String name;
+
+    @ApiModelProperty(value = "Price of the product", example = "10.99", position = 2)
+    private final BigDecimal price;
+
+    @ApiModelProperty(value = "Link to the first image of the product. Null if product has no images.", position = 3)
+    private final String image;
+
+    public ProductCard(Long id, String name, BigDecimal price, String image) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.image = image;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public String getImage() {
+        return image;
+    }
+}
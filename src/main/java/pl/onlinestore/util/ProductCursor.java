@@ -0,0 +1,84 @@
+package pl.onlinestore.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import pl.onlinestore.exception.InvalidRequestParameterException;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ProductSort;
+
+public class ProductCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final ProductSort sort;
+    private final Long id;
+    private final Object value;
+
+    private ProductCursor(ProductSort sort, Long id, Object value) {
+        this.sort = sort;
+        this.id = id;
+        this.value = value;
+    }
+
+    public static ProductCursor after(Product product, ProductSort sort) {
+        return after(product.getId(), product.getPrice(), product.getName(), sort);
+    }
+
+    public static ProductCursor after(Long id, BigDecimal price, String name, ProductSort sort) {
+        switch (sort) {
+            case PRICE:
+                return new ProductCursor(sort, id, price);
+            case NAME:
+                return new ProductCursor(sort, id, name);
+            default:
+                return new ProductCursor(sort, id, null);
+        }
+    }
+
+    public static ProductCursor decode(String encoded, ProductSort expectedSort) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestParameterException("Malformed cursor: " + encoded);
+        }
+
+        try {
+            ProductSort sort = ProductSort.valueOf(parts[0]);
+            if (sort != expectedSort) {
+                throw new InvalidRequestParameterException(
+                    String.format("Cursor was issued for sort '%s', but '%s' was requested.", sort, expectedSort));
+            }
+
+            Long id = Long.valueOf(parts[1]);
+            switch (sort) {
+                case PRICE:
+                    return new ProductCursor(sort, id, new BigDecimal(parts[2]));
+                case NAME:
+                    return new ProductCursor(sort, id, parts[2]);
+                default:
+                    return new ProductCursor(sort, id, null);
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidRequestParameterException("Malformed cursor: " + encoded);
+        }
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + id + (value == null ? "" : SEPARATOR + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ProductSort getSort() {
+        return sort;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,136 @@
+package pl.onlinestore.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ProductFacets {
+
+    private static final int PRICE_BUCKETS = 10;
+    // far beyond any price of a product, and small enough for the width of the histogram not to overflow
+    private static final BigDecimal MAX_PRICE = BigDecimal.valueOf(Long.MAX_VALUE / 4, 2);
+
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final long inStock;
+    private final long outOfStock;
+    private final List<PriceBucket> priceHistogram;
+
+    private ProductFacets(BigDecimal minPrice, BigDecimal maxPrice, long inStock, long outOfStock,
+                          List<PriceBucket> priceHistogram) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.inStock = inStock;
+        this.outOfStock = outOfStock;
+        this.priceHistogram = priceHistogram;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public long getInStock() {
+        return inStock;
+    }
+
+    public long getOutOfStock() {
+        return outOfStock;
+    }
+
+    public List<PriceBucket> getPriceHistogram() {
+        return priceHistogram;
+    }
+
+    public static class PriceBucket {
+
+        private final BigDecimal from;
+        private final BigDecimal to;
+        private final long count;
+
+        private PriceBucket(BigDecimal from, BigDecimal to, long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        public BigDecimal getFrom() {
+            return from;
+        }
+
+        public BigDecimal getTo() {
+            return to;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Collects products in a single pass. Products are counted per distinct price in grosze, so the histogram
+     * bounds can be chosen once the whole price range is known, without visiting the products again.
+     */
+    public static class Builder {
+
+        private final TreeMap<Long, Long> countsByPrice = new TreeMap<>();
+        private long inStock;
+        private long outOfStock;
+
+        private Builder() {
+        }
+
+        public Builder add(BigDecimal price, int quantity) {
+            return add(price, quantity > 0 ? 1 : 0, quantity > 0 ? 0 : 1);
+        }
+
+        public Builder add(BigDecimal price, long inStockCount, long outOfStockCount) {
+            countsByPrice.merge(toCents(price), inStockCount + outOfStockCount, Long::sum);
+            inStock += inStockCount;
+            outOfStock += outOfStockCount;
+            return this;
+        }
+
+        public ProductFacets build() {
+            if (countsByPrice.isEmpty()) {
+                return new ProductFacets(null, null, inStock, outOfStock, new ArrayList<>());
+            }
+
+            long min = countsByPrice.firstKey();
+            long max = countsByPrice.lastKey();
+            long width = Math.max(1, (max - min + PRICE_BUCKETS) / PRICE_BUCKETS);
+            long[] counts = new long[(int) ((max - min) / width) + 1];
+
+            for (Map.Entry<Long, Long> priceCount : countsByPrice.entrySet()) {
+                counts[(int) ((priceCount.getKey() - min) / width)] += priceCount.getValue();
+            }
+
+            List<PriceBucket> histogram = new ArrayList<>();
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                long from = min + bucket * width;
+                histogram.add(new PriceBucket(toPrice(from), toPrice(from + width), counts[bucket]));
+            }
+
+            return new ProductFacets(toPrice(min), toPrice(max), inStock, outOfStock, histogram);
+        }
+
+        private static long toCents(BigDecimal price) {
+            BigDecimal clamped = price.max(MAX_PRICE.negate()).min(MAX_PRICE);
+            return clamped.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+
+        private static BigDecimal toPrice(long cents) {
+            return BigDecimal.valueOf(cents, 2);
+        }
+    }
+}
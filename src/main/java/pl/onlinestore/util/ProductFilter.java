@@ -0,0 +1,92 @@
+package pl.onlinestore.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import pl.onlinestore.model.Product;
+
+public class ProductFilter {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private final String nameContains;
+    private final String descContains;
+    private final BigDecimal priceGreaterThan;
+    private final BigDecimal priceLessThan;
+    private final BigDecimal priceEqualTo;
+
+    public ProductFilter(String nameContains, String descContains, BigDecimal priceGreaterThan, BigDecimal priceLessThan,
+                         BigDecimal priceEqualTo) {
+        this.nameContains = nameContains;
+        this.descContains = descContains;
+        this.priceGreaterThan = priceGreaterThan;
+        this.priceLessThan = priceLessThan;
+        this.priceEqualTo = priceEqualTo;
+    }
+
+    public String getNameContains() {
+        return nameContains;
+    }
+
+    public String getDescContains() {
+        return descContains;
+    }
+
+    public BigDecimal getPriceGreaterThan() {
+        return priceGreaterThan;
+    }
+
+    public BigDecimal getPriceLessThan() {
+        return priceLessThan;
+    }
+
+    public BigDecimal getPriceEqualTo() {
+        return priceEqualTo;
+    }
+
+    public boolean hasTextCriteria() {
+        return nameContains != null || descContains != null;
+    }
+
+    public Specification<Product> toTextSpecification() {
+        return (root, query, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (nameContains != null) {
+                predicates.add(criteriaBuilder.like(root.get("name"), containsPattern(nameContains), LIKE_ESCAPE));
+            }
+            if (descContains != null) {
+                predicates.add(criteriaBuilder.like(root.get("description"), containsPattern(descContains), LIKE_ESCAPE));
+            }
+
+            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    public Specification<Product> toPriceSpecification() {
+        return (root, query, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (priceGreaterThan != null) {
+                predicates.add(criteriaBuilder.greaterThan(root.get("price"), priceGreaterThan));
+            }
+            if (priceLessThan != null) {
+                predicates.add(criteriaBuilder.lessThan(root.get("price"), priceLessThan));
+            }
+            if (priceEqualTo != null) {
+                predicates.add(criteriaBuilder.equal(root.get("price"), priceEqualTo));
+            }
+
+            return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    private static String containsPattern(String value) {
+        String escaped = value.replace(String.valueOf(LIKE_ESCAPE), "" + LIKE_ESCAPE + LIKE_ESCAPE)
+                              .replace("%", LIKE_ESCAPE + "%")
+                              .replace("_", LIKE_ESCAPE + "_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,49 @@
+package pl.onlinestore.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ProductImportResult {
+
+    private final int maxReportedErrors;
+    private final List<Map<String, Object>> errors = new ArrayList<>();
+    private int imported;
+    private int rejected;
+    private int lastRejectedRow;
+
+    public ProductImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<Map<String, Object>> getErrors() {
+        return errors;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void reject(int row, String field, String error) {
+        if (row != lastRejectedRow) {
+            rejected++;
+            lastRejectedRow = row;
+        }
+        if (errors.size() < maxReportedErrors) {
+            Map<String, Object> errorMap = new LinkedHashMap<>();
+            errorMap.put("row", row);
+            errorMap.put("field", field);
+            errorMap.put("error", error);
+            errors.add(errorMap);
+        }
+    }
+}
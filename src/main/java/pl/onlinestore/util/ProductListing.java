@@ -0,0 +1,22 @@
+package pl.onlinestore.util;
+
+import java.util.List;
+
+public class ProductListing<T> {
+
+    private final List<T> products;
+    private final ProductFacets facets;
+
+    public ProductListing(List<T> products, ProductFacets facets) {
+        this.products = products;
+        this.facets = facets;
+    }
+
+    public List<T> getProducts() {
+        return products;
+    }
+
+    public ProductFacets getFacets() {
+        return facets;
+    }
+}
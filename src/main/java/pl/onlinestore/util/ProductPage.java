@@ -0,0 +1,22 @@
+package pl.onlinestore.util;
+
+import java.util.List;
+
+public class ProductPage<T> {
+
+    private final List<T> products;
+    private final ProductCursor nextCursor;
+
+    public ProductPage(List<T> products, ProductCursor nextCursor) {
+        this.products = products;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getProducts() {
+        return products;
+    }
+
+    public ProductCursor getNextCursor() {
+        return nextCursor;
+    }
+}
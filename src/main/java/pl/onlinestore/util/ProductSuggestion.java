@@ -0,0 +1,27 @@
+package pl.onlinestore.util;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel(description = "Product name matching typed prefix.")
+public class ProductSuggestion {
+
+    @ApiModelProperty(value = "Unique product identifier", example = "1")
+    private final Long id;
+
+    @ApiModelProperty(value = "Name of the product", position = 1)
+    private final String name;
+
+    public ProductSuggestion(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
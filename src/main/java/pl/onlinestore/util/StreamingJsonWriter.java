@@ -0,0 +1,61 @@
+package pl.onlinestore.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes entities to the response as a JSON array while they are read from the database, so only the entities being
+ * written are kept in memory. The persistence context is cleared after every entity, which detaches it together with
+ * the associations loaded for it, so streams of entities with associations should load them in chunks, see
+ * {@link ChunkedStream}.
+ */
+@Component
+public class StreamingJsonWriter {
+
+    private final ObjectMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public StreamingJsonWriter(ObjectMapper mapper, PlatformTransactionManager transactionManager) {
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public <T> StreamingResponseBody write(Supplier<Stream<T>> entities, Class<?> view) {
+        ObjectWriter writer = (view != null ? mapper.writerWithView(view) : mapper.writer())
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return outputStream -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<T> stream = entities.get();
+                 JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)
+                                                 .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartArray();
+                for (Iterator<T> iterator = stream.iterator(); iterator.hasNext(); ) {
+                    writer.writeValue(generator, iterator.next());
+                    entityManager.clear();
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -5,17 +5,21 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
+import pl.onlinestore.catalog.StockLedger;
 import pl.onlinestore.model.Order;
 import pl.onlinestore.model.OrderItem;
 import pl.onlinestore.model.Product;
-import pl.onlinestore.service.ProductService;
+import pl.onlinestore.model.enums.CheckoutStage;
+import pl.onlinestore.service.CheckoutContext;
 
 public class OrderValidator implements Validator {
 
-    private final ProductService productService;
+    private final CheckoutContext checkoutContext;
+    private final StockLedger stockLedger;
 
-    public OrderValidator(ProductService productService) {
-        this.productService = productService;
+    public OrderValidator(CheckoutContext checkoutContext, StockLedger stockLedger) {
+        this.checkoutContext = checkoutContext;
+        this.stockLedger = stockLedger;
     }
 
     @Override
@@ -38,9 +42,14 @@ public class OrderValidator implements Validator {
         }
 
         Map<Long, Integer> productQuantitiesMap =
-            productService.getProductsByIds(orderedProductsIdsSet).stream()
-                          .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+            checkoutContext.getProducts(orderedProductsIdsSet).values().stream()
+                           .collect(Collectors.toMap(Product::getId, product -> stockLedger.isHot(product.getId())
+                               ? (int) stockLedger.getAvailableStock(product.getId()) : product.getQuantity()));
 
+        checkoutContext.time(CheckoutStage.VALIDATE, () -> validateQuantities(order, productQuantitiesMap, errors));
+    }
+
+    private void validateQuantities(Order order, Map<Long, Integer> productQuantitiesMap, Errors errors) {
         int itemIndex = 0;
 
         for (OrderItem orderItem : order.getItems()) {
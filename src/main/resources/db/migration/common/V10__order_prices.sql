@@ -0,0 +1,12 @@
+-- prices of ordered products and totals of orders are saved when the order is placed, so that repricing a product does
+-- not change orders placed before
+ALTER TABLE order_item ADD COLUMN unit_price NUMERIC(12, 2);
+ALTER TABLE transaction ADD COLUMN total NUMERIC(14, 2);
+
+-- existing orders keep the current prices of their products, which they were shown with until now
+UPDATE order_item SET unit_price = (SELECT p.price FROM product p WHERE p.id = order_item.product_id);
+UPDATE transaction SET total = COALESCE((SELECT SUM(i.unit_price * i.quantity) FROM order_item i
+                                         WHERE i.order_id = transaction.id), 0);
+
+ALTER TABLE order_item ALTER COLUMN unit_price SET NOT NULL;
+ALTER TABLE transaction ALTER COLUMN total SET NOT NULL;
@@ -0,0 +1,7 @@
+-- pages of OrderDaoCustom.findIds filtered by status, payment method or buyer and sorted by time
+CREATE INDEX IF NOT EXISTS transaction_status_time_id_idx ON transaction (status, time, id);
+CREATE INDEX IF NOT EXISTS transaction_payment_method_time_id_idx ON transaction (payment_method, time, id);
+CREATE INDEX IF NOT EXISTS transaction_buyer_id_time_id_idx ON transaction (buyer_id, time, id);
+
+-- pages of OrderDaoCustom.findIds sorted by total
+CREATE INDEX IF NOT EXISTS transaction_total_id_idx ON transaction (total, id);
@@ -0,0 +1,3 @@
+-- pages of OrderDaoCustom.findIds without a filter, sorted by time and then by id
+DROP INDEX IF EXISTS transaction_time_idx;
+CREATE INDEX IF NOT EXISTS transaction_time_id_idx ON transaction (time, id);
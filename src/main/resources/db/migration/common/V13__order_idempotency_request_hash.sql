@@ -0,0 +1,2 @@
+-- hash of the order sent with the key, so that the key cannot be reused for a different order; null for older keys
+ALTER TABLE order_idempotency_key ADD COLUMN request_hash VARCHAR(32);
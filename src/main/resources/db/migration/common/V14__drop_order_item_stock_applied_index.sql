@@ -0,0 +1,2 @@
+-- almost every item is applied, so an index on the flag itself is never selective; PostgreSQL gets a partial index
+DROP INDEX IF EXISTS order_item_stock_applied_idx;
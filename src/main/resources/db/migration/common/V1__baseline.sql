@@ -0,0 +1,57 @@
+CREATE SEQUENCE product_sequence START WITH 1 INCREMENT BY 1;
+CREATE SEQUENCE user_sequence START WITH 1 INCREMENT BY 1;
+CREATE SEQUENCE order_sequence START WITH 1 INCREMENT BY 1;
+CREATE SEQUENCE order_item_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE product (
+    id          BIGINT         NOT NULL,
+    name        VARCHAR(255),
+    description VARCHAR(255),
+    price       NUMERIC(12, 2) NOT NULL,
+    quantity    INTEGER        NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE product_images (
+    product_id BIGINT NOT NULL,
+    image      VARCHAR(255),
+    CONSTRAINT product_images_product_fk FOREIGN KEY (product_id) REFERENCES product (id)
+);
+
+CREATE TABLE customer (
+    id       BIGINT NOT NULL,
+    name     VARCHAR(255),
+    surname  VARCHAR(255),
+    address  VARCHAR(255),
+    email    VARCHAR(255),
+    password VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE customer_roles (
+    customer_id BIGINT NOT NULL,
+    roles       VARCHAR(255),
+    CONSTRAINT customer_roles_customer_fk FOREIGN KEY (customer_id) REFERENCES customer (id)
+);
+
+CREATE TABLE transaction (
+    id               BIGINT       NOT NULL,
+    buyer_id         BIGINT       NOT NULL,
+    delivery_address VARCHAR(255) NOT NULL,
+    payment_method   VARCHAR(255) NOT NULL,
+    information      VARCHAR(150),
+    status           VARCHAR(255),
+    time             TIMESTAMP,
+    PRIMARY KEY (id),
+    CONSTRAINT transaction_buyer_fk FOREIGN KEY (buyer_id) REFERENCES customer (id)
+);
+
+CREATE TABLE order_item (
+    id         BIGINT  NOT NULL,
+    order_id   BIGINT  NOT NULL,
+    product_id BIGINT  NOT NULL,
+    quantity   INTEGER NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT order_item_order_fk FOREIGN KEY (order_id) REFERENCES transaction (id),
+    CONSTRAINT order_item_product_fk FOREIGN KEY (product_id) REFERENCES product (id)
+);
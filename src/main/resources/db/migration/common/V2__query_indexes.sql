@@ -0,0 +1,24 @@
+-- UserDao.getUserByEmail (every login) and UniqueEmailValidator
+CREATE UNIQUE INDEX IF NOT EXISTS customer_email_idx ON customer (email);
+
+-- roles fetched together with every user
+CREATE INDEX IF NOT EXISTS customer_roles_customer_id_idx ON customer_roles (customer_id);
+
+-- OrderDao.getOrdersByBuyerId
+CREATE INDEX IF NOT EXISTS transaction_buyer_id_idx ON transaction (buyer_id);
+
+-- orders listed by date
+CREATE INDEX IF NOT EXISTS transaction_time_idx ON transaction (time);
+
+-- items fetched together with every order
+CREATE INDEX IF NOT EXISTS order_item_order_id_idx ON order_item (order_id);
+
+-- foreign key checked when a product is deleted
+CREATE INDEX IF NOT EXISTS order_item_product_id_idx ON order_item (product_id);
+
+-- images fetched together with every product
+CREATE INDEX IF NOT EXISTS product_images_product_id_idx ON product_images (product_id);
+
+-- keyset pages of ProductDaoCustom.findIdsAfter sorted by price and by name
+CREATE INDEX IF NOT EXISTS product_price_id_idx ON product (price, id);
+CREATE INDEX IF NOT EXISTS product_name_id_idx ON product (name, id);
@@ -0,0 +1,2 @@
+-- ids of products are allocated by Hibernate in blocks of 50 from a single nextval
+ALTER SEQUENCE product_sequence INCREMENT BY 50;
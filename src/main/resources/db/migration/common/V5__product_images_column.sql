@@ -0,0 +1,3 @@
+-- images of products kept as a JSON array on the product row when product.images.storage is JSON_COLUMN; the rows are
+-- moved between this column and product_images on startup, see ProductImagesStorageCallback
+ALTER TABLE product ADD COLUMN images VARCHAR(4000);
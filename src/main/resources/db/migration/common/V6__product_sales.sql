@@ -0,0 +1,9 @@
+-- quantities sold per product and hour, appended by BestsellerRanking and pruned after the longest ranking window
+CREATE TABLE product_sales (
+    product_id BIGINT NOT NULL,
+    sold_hour  BIGINT NOT NULL,
+    quantity   BIGINT NOT NULL
+);
+
+CREATE INDEX product_sales_sold_hour_idx ON product_sales (sold_hour);
+CREATE INDEX product_sales_product_id_idx ON product_sales (product_id);
@@ -0,0 +1,3 @@
+-- optimistic locking versions of products and orders, increased on every update of the row
+ALTER TABLE product ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE transaction ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
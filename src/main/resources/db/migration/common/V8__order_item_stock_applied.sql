@@ -0,0 +1,4 @@
+-- items of orders for hot products are subtracted from product stock later, in batches, by StockLedger
+ALTER TABLE order_item ADD COLUMN stock_applied BOOLEAN DEFAULT TRUE NOT NULL;
+
+CREATE INDEX order_item_stock_applied_idx ON order_item (stock_applied);
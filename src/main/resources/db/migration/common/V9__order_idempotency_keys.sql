@@ -0,0 +1,11 @@
+-- keys sent by clients with new orders, so that a retried request returns the order placed by the first one
+CREATE TABLE order_idempotency_key (
+    buyer_id        BIGINT       NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    order_id        BIGINT       NOT NULL,
+    created_at      TIMESTAMP    NOT NULL,
+    PRIMARY KEY (buyer_id, idempotency_key),
+    CONSTRAINT order_idempotency_key_order_fk FOREIGN KEY (order_id) REFERENCES transaction (id) ON DELETE CASCADE
+);
+
+CREATE INDEX order_idempotency_key_created_at_idx ON order_idempotency_key (created_at);
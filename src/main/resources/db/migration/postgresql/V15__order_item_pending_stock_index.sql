@@ -0,0 +1,2 @@
+-- indexes only the items still waiting for StockLedger, which stay few while the table grows
+CREATE INDEX IF NOT EXISTS order_item_pending_stock_idx ON order_item (id) WHERE stock_applied = FALSE;
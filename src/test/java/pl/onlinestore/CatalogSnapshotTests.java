@@ -0,0 +1,201 @@
+package pl.onlinestore;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.onlinestore.catalog.CatalogEntry;
+import pl.onlinestore.catalog.CatalogSnapshot;
+import pl.onlinestore.catalog.ProductCatalog;
+import pl.onlinestore.configuration.CustomRequest;
+import pl.onlinestore.controller.ProductController;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ProductSort;
+
+@SpringBootTest(properties = "catalog.snapshot.enabled=true")
+@ComponentScan
+@AutoConfigureTestDatabase
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CatalogSnapshotTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductDao productDao;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private CustomRequest request;
+
+    private List<Product> products;
+
+    @BeforeAll
+    void init() {
+        products = Arrays.asList(
+            new Product("Tea", "A box of green tea.", Collections.singleton("/teaimageurl"), BigDecimal.valueOf(6.49D), 12),
+            new Product("Sugar", "1kg of sugar.", Collections.singleton("/sugarimageurl"), BigDecimal.valueOf(3.19D), 40),
+            new Product("Honey", "A jar of honey.", Collections.singleton("/honeyimageurl"), BigDecimal.valueOf(21.90D), 5));
+
+        productDao.saveAll(products);
+    }
+
+    @AfterAll
+    void cleanup() {
+        productDao.deleteAll();
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsFromSnapshotReturnSameJsonAsProductById() throws Exception {
+        Product product = products.get(0);
+        String productJson = mockMvc.perform(get("/api/products/{id}", product.getId()))
+                                    .andExpect(status().isOk())
+                                    .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(get("/api/products").queryParam("nameContains", product.getName())).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(content().json("[" + productJson + "]", true));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsPageFromSnapshotReturnProductsOrderedByPrice() throws Exception {
+        MockHttpServletResponse firstPage = mockMvc.perform(get("/api/products").queryParam("sort", "PRICE")
+                                                                                .queryParam("limit", "2"))
+                                                   .andDo(print())
+                                                   .andExpect(status().isOk())
+                                                   .andExpect(jsonPath("$", hasSize(2)))
+                                                   .andExpect(jsonPath("$[0].name").value("Sugar"))
+                                                   .andExpect(jsonPath("$[1].name").value("Tea"))
+                                                   .andReturn().getResponse();
+
+        MockHttpServletResponse secondPage =
+            mockMvc.perform(get("/api/products").queryParam("sort", "PRICE").queryParam("limit", "2")
+                                                .queryParam("after", firstPage.getHeader(ProductController.NEXT_CURSOR_HEADER)))
+                   .andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$", hasSize(1)))
+                   .andExpect(jsonPath("$[0].name").value("Honey"))
+                   .andReturn().getResponse();
+
+        assertNull(secondPage.getHeader(ProductController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsSummaryFromSnapshotReturnOnlyCardAttributes() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("sort", "PRICE").queryParam("view", "summary"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].name", contains("Sugar", "Tea", "Honey")))
+               .andExpect(jsonPath("$[0].image").value("/sugarimageurl"))
+               .andExpect(jsonPath("$[0].description").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void searchProductsFromSnapshotReturnOk() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("q", "honey").queryParam("priceGreaterThan", "10"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].name").value("Honey"));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsPageWithFacetsFromSnapshotReturnFacetsOfAllMatchingProducts() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("priceGreaterThan", "5")
+                                            .queryParam("limit", "1")
+                                            .queryParam("facets", "true"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.products", hasSize(1)))
+               .andExpect(jsonPath("$.facets.minPrice").value(6.49D))
+               .andExpect(jsonPath("$.facets.maxPrice").value(21.90D))
+               .andExpect(jsonPath("$.facets.inStock").value(2))
+               .andExpect(jsonPath("$.facets.outOfStock").value(0));
+    }
+
+    @Test
+    void changedSnapshotKeepsEntriesSortedByPriceAndName() {
+        Product apple = productDao.save(new Product("Apple", "A single apple.", Collections.singleton("/appleimageurl"),
+                                                    BigDecimal.valueOf(4.50D), 30));
+        try {
+            assertSortedAsRebuiltSnapshot();
+
+            apple.setPrice(BigDecimal.valueOf(25.00D));
+            apple.setName("Zucchini");
+            apple = productDao.save(apple);
+            assertSortedAsRebuiltSnapshot();
+
+            apple.setQuantity(29);
+            apple = productDao.save(apple);
+            assertSortedAsRebuiltSnapshot();
+        } finally {
+            productDao.delete(apple);
+        }
+        assertSortedAsRebuiltSnapshot();
+    }
+
+    private void assertSortedAsRebuiltSnapshot() {
+        CatalogSnapshot snapshot = productCatalog.getSnapshot();
+        List<CatalogEntry> entries = snapshot.list(entry -> true, null, null, Integer.MAX_VALUE).getProducts();
+        CatalogSnapshot rebuilt = CatalogSnapshot.of(snapshot.getVersion(), entries);
+
+        for (ProductSort sort : ProductSort.values()) {
+            assertEquals(rebuilt.list(entry -> true, sort, null, Integer.MAX_VALUE).getProducts(),
+                         snapshot.list(entry -> true, sort, null, Integer.MAX_VALUE).getProducts());
+        }
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void updateProductPublishesNewSnapshot() throws Exception {
+        long version = productCatalog.getSnapshot().getVersion();
+        Product product = mapper.readValue(mockMvc.perform(get("/api/products/{id}", products.get(1).getId()))
+                                                  .andReturn().getResponse().getContentAsString(), Product.class);
+        product.setPrice(BigDecimal.valueOf(3.59D));
+
+        mockMvc.perform(request.builder(HttpMethod.PUT, "/api/products").content(mapper.writeValueAsString(product)))
+               .andExpect(status().isOk());
+
+        assertEquals(version + 1, productCatalog.getSnapshot().getVersion());
+        mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "3.59")).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(product.getId()));
+    }
+}
@@ -1,21 +1,46 @@
 package pl.onlinestore;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.anonymous;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,25 +53,46 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.onlinestore.catalog.BestsellerRanking;
+import pl.onlinestore.catalog.ProductCache;
+import pl.onlinestore.catalog.ProductCooccurrenceIndex;
+import pl.onlinestore.catalog.StockLedger;
 import pl.onlinestore.configuration.CustomRequest;
+import pl.onlinestore.configuration.RecordingStatementInspector;
+import pl.onlinestore.controller.OrderController;
+import pl.onlinestore.controller.OrderIntakeController;
+import pl.onlinestore.dao.OrderDao;
 import pl.onlinestore.dao.UserDao;
 import pl.onlinestore.model.Address;
 import pl.onlinestore.model.Order;
 import pl.onlinestore.model.OrderItem;
 import pl.onlinestore.model.Product;
 import pl.onlinestore.model.User;
+import pl.onlinestore.model.enums.CheckoutStage;
 import pl.onlinestore.model.enums.OrderStatus;
 import pl.onlinestore.model.enums.PaymentMethod;
 import pl.onlinestore.model.enums.Role;
+import pl.onlinestore.service.CheckoutContext;
+import pl.onlinestore.service.IdempotentOrderService;
+import pl.onlinestore.service.OptimisticLockRetryExecutor;
 import pl.onlinestore.service.OrderService;
 import pl.onlinestore.service.ProductService;
 
-@SpringBootTest
+@SpringBootTest(properties = {"order.intake.async.enabled=true",
+                              "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                              + "pl.onlinestore.configuration.RecordingStatementInspector"})
 @ComponentScan
 @AutoConfigureTestDatabase
 @AutoConfigureMockMvc
@@ -66,6 +112,36 @@ class OrderControllerTests {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private OrderDao orderDao;
+
+    @Autowired
+    private BestsellerRanking bestsellerRanking;
+
+    @Autowired
+    private ProductCooccurrenceIndex cooccurrenceIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private OptimisticLockRetryExecutor retryExecutor;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
     private ObjectMapper mapper;
 
@@ -105,7 +181,12 @@ class OrderControllerTests {
     private Order createOrder() {
         Order order = new Order();
         List<Product> products = productService.getAll();
-        order.setItems(products.stream().map(product -> new OrderItem(product, 1)).collect(Collectors.toSet()));
+        order.setItems(products.stream().map(product -> {
+            OrderItem item = new OrderItem(product, 1);
+            item.setUnitPrice(product.getPrice());
+            return item;
+        }).collect(Collectors.toSet()));
+        order.setTotal(products.stream().map(Product::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add));
         order.setDeliveryAddress(new Address("Testowa 1", "01-234", "Testowo"));
         order.setPaymentMethod(PaymentMethod.BANK_TRANSFER);
         order.setStatus(OrderStatus.CREATED);
@@ -114,6 +195,57 @@ class OrderControllerTests {
         return order;
     }
 
+    private Order saveOrder(User buyer, PaymentMethod paymentMethod, OffsetDateTime time) {
+        Order order = createOrder();
+        order.setBuyer(buyer);
+        order.setPaymentMethod(paymentMethod);
+        Order saved = orderDao.save(order);
+        entityManager.flush();
+        // time of the order is generated on insert, so it is backdated afterwards
+        entityManager.createNativeQuery("UPDATE transaction SET time = ?1 WHERE id = ?2")
+                     .setParameter(1, time)
+                     .setParameter(2, saved.getId())
+                     .executeUpdate();
+        entityManager.refresh(saved);
+        return saved;
+    }
+
+    private void mockStockSeenByValidator(List<Product> products, int quantity) {
+        Set<Product> validatedProducts = products.stream().map(product -> {
+            Product validated = new Product(product.getName(), product.getDescription(), product.getImages(),
+                                            product.getPrice(), quantity);
+            validated.setId(product.getId());
+            return validated;
+        }).collect(Collectors.toSet());
+        Mockito.doReturn(validatedProducts).when(productService).getProductsByIds(Mockito.any());
+    }
+
+    private JsonNode awaitOrderHandle(String location) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        JsonNode handle;
+        do {
+            Thread.sleep(20);
+            handle = mapper.readTree(mockMvc.perform(get(location))
+                                            .andExpect(status().isOk())
+                                            .andReturn().getResponse().getContentAsString());
+        } while (handle.get("status").asText().equals("QUEUED") && System.currentTimeMillis() < deadline);
+        return handle;
+    }
+
+    private int getQuantityInDatabase(Long productId) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM product WHERE id = ?", Integer.class, productId);
+    }
+
+    private void restoreStockAndClearSales(Map<Long, Integer> stock) {
+        productService.getAll().forEach(product -> {
+            product.setQuantity(stock.get(product.getId()));
+            productService.update(product);
+        });
+        bestsellerRanking.flush();
+        jdbcTemplate.update("DELETE FROM product_sales");
+        bestsellerRanking.load();
+    }
+
     @Test
     @WithUserDetails("user@test.pl")
     void addOrderReturnOk() throws Exception {
@@ -123,6 +255,291 @@ class OrderControllerTests {
                .andExpect(status().isCreated());
     }
 
+    @Test
+    @WithUserDetails("user@test.pl")
+    void addOrderLoadsBuyerAndProductsOnce() throws Exception {
+        Order order = createOrder();
+        List<Long> productIds = order.getItems().stream().map(item -> item.getProduct().getId())
+                                     .collect(Collectors.toList());
+        productCache.invalidate(productIds);
+
+        RecordingStatementInspector.clear();
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .content(mapper.writeValueAsString(order))).andDo(print())
+               .andExpect(status().isCreated());
+        List<String> statements = RecordingStatementInspector.getStatements();
+
+        assertEquals(1, statements.stream().filter(sql -> sql.contains(" from customer ")).count());
+        // loaded for validation and read again once their stock is decremented
+        assertEquals(2, statements.stream().filter(sql -> sql.contains(" from product ")).count());
+        assertEquals(3, statements.stream().filter(sql -> sql.startsWith("select")).count());
+        for (CheckoutStage stage : CheckoutStage.values()) {
+            assertTrue(meterRegistry.get("checkout.stage").tag("stage", stage.name().toLowerCase()).timer().count() > 0,
+                       () -> "Duration of stage " + stage + " was not recorded");
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void addOrderKeepsPricesOfProductsAfterRepricing() throws Exception {
+        String response = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                 .content(mapper.writeValueAsString(createOrder()))).andDo(print())
+                                 .andExpect(status().isCreated())
+                                 .andExpect(jsonPath("$.cost").value(11.98D))
+                                 .andExpect(jsonPath("$.items[*].unitPrice", containsInAnyOrder(2.99D, 8.99D)))
+                                 .andReturn().getResponse().getContentAsString();
+        long orderId = mapper.readTree(response).get("id").asLong();
+
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE product SET price = price * 2");
+        entityManager.clear();
+
+        mockMvc.perform(get("/api/orders/buyer").queryParam("view", "summary")).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[0].cost").value(11.98D));
+        Order order = orderDao.findById(orderId).get();
+        assertEquals(0, BigDecimal.valueOf(11.98D).compareTo(order.getCost()));
+        order.getItems().forEach(item -> assertEquals(
+            0, item.getProduct().getPrice().compareTo(item.getUnitPrice().multiply(BigDecimal.valueOf(2)))));
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void addOrderTwiceWithSameIdempotencyKeyPlacesItOnce() throws Exception {
+        Order order = createOrder();
+        String firstResponse = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                      .header(OrderController.IDEMPOTENCY_KEY_HEADER, "retried-order")
+                                      .content(mapper.writeValueAsString(order))).andDo(print())
+                                      .andExpect(status().isCreated())
+                                      .andReturn().getResponse().getContentAsString();
+        String retriedResponse = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "retried-order")
+                                        .content(mapper.writeValueAsString(order))).andDo(print())
+                                        .andExpect(status().isCreated())
+                                        .andReturn().getResponse().getContentAsString();
+
+        assertEquals(mapper.readTree(firstResponse).get("id"), mapper.readTree(retriedResponse).get("id"));
+        assertEquals(1L, orderDao.count());
+        Mockito.verify(productService, Mockito.times(1)).getProductsByIds(Mockito.any());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void addOrderWithIdempotencyKeyOfDeletedOrderPlacesItAgain() throws Exception {
+        // deleting an order does not give its stock back, so only a part of the stock is ordered
+        Product product = productService.getAll().stream()
+                                        .filter(candidate -> candidate.getName().equals("Product 2"))
+                                        .findFirst().get();
+        Order order = createOrder();
+        order.setItems(Collections.singleton(new OrderItem(product, 1)));
+        String firstResponse = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                      .header(OrderController.IDEMPOTENCY_KEY_HEADER, "deleted-order")
+                                      .content(mapper.writeValueAsString(order))).andDo(print())
+                                      .andExpect(status().isCreated())
+                                      .andReturn().getResponse().getContentAsString();
+        orderService.delete(mapper.readTree(firstResponse).get("id").asLong());
+        entityManager.flush();
+
+        String retriedResponse = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                        .header(OrderController.IDEMPOTENCY_KEY_HEADER, "deleted-order")
+                                        .content(mapper.writeValueAsString(order))).andDo(print())
+                                        .andExpect(status().isCreated())
+                                        .andReturn().getResponse().getContentAsString();
+
+        assertTrue(mapper.readTree(retriedResponse).get("id").asLong() > mapper.readTree(firstResponse).get("id").asLong());
+        assertEquals(1L, orderDao.count());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void invalidOrderDoesNotUseUpIdempotencyKey() throws Exception {
+        Order order = createOrder();
+        order.setDeliveryAddress(null);
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .header(OrderController.IDEMPOTENCY_KEY_HEADER, "corrected-order")
+               .content(mapper.writeValueAsString(order))).andDo(print())
+               .andExpect(status().isUnprocessableEntity())
+               .andExpect(jsonPath("$.errors[0].field").value("deliveryAddress"));
+
+        order.setDeliveryAddress(new Address("Testowa 1", "01-234", "Testowo"));
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .header(OrderController.IDEMPOTENCY_KEY_HEADER, "corrected-order")
+               .content(mapper.writeValueAsString(order))).andDo(print())
+               .andExpect(status().isCreated());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void addDifferentOrderWithUsedIdempotencyKeyReturnUnprocessableEntity() throws Exception {
+        Order order = createOrder();
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .header(OrderController.IDEMPOTENCY_KEY_HEADER, "reused-key")
+               .content(mapper.writeValueAsString(order))).andDo(print())
+               .andExpect(status().isCreated());
+
+        order.setInformation("Another order");
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .header(OrderController.IDEMPOTENCY_KEY_HEADER, "reused-key")
+               .content(mapper.writeValueAsString(order))).andDo(print())
+               .andExpect(status().isUnprocessableEntity());
+        assertEquals(1L, orderDao.count());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void queueOrderWithIdempotencyKeyReturnBadRequest() throws Exception {
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .header(OrderController.IDEMPOTENCY_KEY_HEADER, "queued-order")
+               .header(OrderIntakeController.PREFER_HEADER, OrderIntakeController.RESPOND_ASYNC)
+               .content(mapper.writeValueAsString(createOrder()))).andDo(print())
+               .andExpect(status().isBadRequest());
+        assertEquals(0L, orderDao.count());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void addOrderWithTooLongIdempotencyKeyReturnBadRequest() throws Exception {
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+               .header(OrderController.IDEMPOTENCY_KEY_HEADER,
+                       String.join("", Collections.nCopies(IdempotentOrderService.MAX_KEY_LENGTH + 1, "k")))
+               .content(mapper.writeValueAsString(createOrder()))).andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentRequestWithSameIdempotencyKeyWaitsForTheFirstOne() throws Exception {
+        Map<Long, Integer> stock = productService.getAll().stream()
+                                                 .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        Mockito.doAnswer(invocation -> {
+            Thread.sleep(300);
+            return invocation.callRealMethod();
+        }).when(orderService).place(Mockito.any(Order.class), Mockito.any(CheckoutContext.class));
+
+        String content = mapper.writeValueAsString(createOrder());
+        Callable<String> addOrder = () -> mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                                 .with(user("user@test.pl"))
+                                                 .header(OrderController.IDEMPOTENCY_KEY_HEADER, "concurrent-order")
+                                                 .content(content))
+                                                 .andExpect(status().isCreated())
+                                                 .andReturn().getResponse().getContentAsString();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(addOrder);
+            Future<String> second = executor.submit(addOrder);
+
+            assertEquals(mapper.readTree(first.get()).get("id"), mapper.readTree(second.get()).get("id"));
+            assertEquals(1L, orderDao.count());
+            Mockito.verify(orderService, Mockito.times(1))
+                   .place(Mockito.any(Order.class), Mockito.any(CheckoutContext.class));
+        } finally {
+            executor.shutdown();
+            Mockito.reset(orderService);
+            orderDao.deleteAll();
+            restoreStockAndClearSales(stock);
+            cooccurrenceIndex.rebuild();
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void addOrderUpdatesBestsellers() throws Exception {
+        Map<Long, Integer> stock = productService.getAll().stream()
+                                                 .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        Order order = createOrder();
+        order.getItems().forEach(item -> item.setQuantity(item.getProduct().getQuantity()));
+
+        String orderJson = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                  .content(mapper.writeValueAsString(order)))
+                                  .andExpect(status().isCreated())
+                                  .andReturn().getResponse().getContentAsString();
+        try {
+            mockMvc.perform(get("/api/products/bestsellers").queryParam("window", "WEEK")).andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].product.name", contains("Product 2", "Product 1")))
+                   .andExpect(jsonPath("$[*].soldQuantity", contains(2, 1)));
+
+            bestsellerRanking.flush();
+            assertEquals(3L, jdbcTemplate.queryForObject("SELECT SUM(quantity) FROM product_sales", Long.class));
+            bestsellerRanking.load();
+
+            mockMvc.perform(get("/api/products/bestsellers").queryParam("limit", "1")).andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].product.name", contains("Product 2")));
+        } finally {
+            orderDao.deleteById(mapper.readTree(orderJson).get("id").asLong());
+            restoreStockAndClearSales(stock);
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void addOrderUpdatesRelatedProducts() throws Exception {
+        Map<Long, Integer> stock = productService.getAll().stream()
+                                                 .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        List<Long> productIds = stock.keySet().stream().sorted().collect(Collectors.toList());
+
+        String orderJson = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                  .content(mapper.writeValueAsString(createOrder())))
+                                  .andExpect(status().isCreated())
+                                  .andReturn().getResponse().getContentAsString();
+        try {
+            mockMvc.perform(get("/api/products/{id}/related", productIds.get(0))).andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(productIds.get(1).intValue())));
+
+            cooccurrenceIndex.rebuild();
+
+            mockMvc.perform(get("/api/products/{id}/related", productIds.get(1))).andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(productIds.get(0).intValue())));
+        } finally {
+            orderDao.deleteById(mapper.readTree(orderJson).get("id").asLong());
+            restoreStockAndClearSales(stock);
+            cooccurrenceIndex.rebuild();
+        }
+
+        mockMvc.perform(get("/api/products/{id}/related", productIds.get(0))).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void deleteOrderUpdatesRelatedProducts() throws Exception {
+        Map<Long, Integer> stock = productService.getAll().stream()
+                                                 .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        List<Long> productIds = stock.keySet().stream().sorted().collect(Collectors.toList());
+
+        String orderJson = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                  .content(mapper.writeValueAsString(createOrder())))
+                                  .andExpect(status().isCreated())
+                                  .andReturn().getResponse().getContentAsString();
+        try {
+            orderService.delete(mapper.readTree(orderJson).get("id").asLong());
+
+            for (Long productId : productIds) {
+                mockMvc.perform(get("/api/products/{id}/related", productId)).andDo(print())
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$", hasSize(0)));
+            }
+        } finally {
+            orderDao.deleteAll();
+            restoreStockAndClearSales(stock);
+            cooccurrenceIndex.rebuild();
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void getRelatedProductsOfInvalidProductReturnNotFound() throws Exception {
+        mockMvc.perform(get("/api/products/{id}/related", 999)).andDo(print())
+               .andExpect(status().isNotFound());
+    }
+
     @Test
     @WithUserDetails("user@test.pl")
     void addOrderWithoutProductsReturnUnprocessableEntity() throws Exception {
@@ -172,6 +589,226 @@ class OrderControllerTests {
                .andExpect(status().isUnprocessableEntity());
     }
 
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void addOrderSoldOutAfterValidationReturnUnprocessableEntityAndKeepStock() throws Exception {
+        List<Product> products = productService.getAll();
+        Map<Long, Integer> stock = products.stream().collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        mockStockSeenByValidator(products, 999);
+
+        Order order = createOrder();
+        order.getItems().stream()
+             .filter(item -> item.getProduct().getName().equals("Product 1"))
+             .forEach(item -> item.setQuantity(item.getProduct().getQuantity() + 1));
+
+        try {
+            mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                   .content(mapper.writeValueAsString(order))).andDo(print())
+                   .andExpect(status().isUnprocessableEntity())
+                   .andExpect(jsonPath("$.errors", hasSize(1)))
+                   .andExpect(jsonPath("$.errors[0].field", endsWith("].quantity")))
+                   .andExpect(jsonPath("$.errors[0].error", startsWith("Product 'Product 1' is ordered in more quantity")));
+        } finally {
+            Mockito.reset(productService);
+        }
+
+        productService.getAll().forEach(product -> assertEquals(stock.get(product.getId()), product.getQuantity()));
+        assertEquals(0L, orderDao.count());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void addOrderOfHotProductTakesStockFromLedgerAndFlushesIt() throws Exception {
+        Map<Long, Integer> stock = productService.getAll().stream()
+                                                 .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        Product hotProduct = productService.getAll().stream()
+                                           .filter(product -> product.getName().equals("Product 2"))
+                                           .findFirst().get();
+        stockLedger.markHot(hotProduct.getId());
+        String orderJson = null;
+
+        try {
+            Order order = createOrder();
+            order.getItems().forEach(item -> item.setQuantity(item.getProduct().getQuantity()));
+            orderJson = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                               .content(mapper.writeValueAsString(order)))
+                               .andExpect(status().isCreated())
+                               .andReturn().getResponse().getContentAsString();
+
+            assertEquals(0L, stockLedger.getAvailableStock(hotProduct.getId()));
+            assertEquals(2, getQuantityInDatabase(hotProduct.getId()));
+            stock.keySet().stream()
+                 .filter(productId -> !productId.equals(hotProduct.getId()))
+                 .forEach(productId -> assertEquals(0, getQuantityInDatabase(productId)));
+
+            Order anotherOrder = createOrder();
+            anotherOrder.setItems(Collections.singleton(new OrderItem(hotProduct, 1)));
+            mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                   .content(mapper.writeValueAsString(anotherOrder))).andDo(print())
+                   .andExpect(status().isUnprocessableEntity())
+                   .andExpect(jsonPath("$.errors[0].error").value(
+                       "Product 'Product 2' is ordered in more quantity (1) than is in stock (0)."));
+
+            stockLedger.flush();
+            assertEquals(0, getQuantityInDatabase(hotProduct.getId()));
+            assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM order_item WHERE stock_applied = FALSE", Long.class));
+        } finally {
+            stockLedger.unmarkHot(hotProduct.getId());
+            if (orderJson != null) {
+                orderDao.deleteById(mapper.readTree(orderJson).get("id").asLong());
+            }
+            restoreStockAndClearSales(stock);
+            cooccurrenceIndex.rebuild();
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void reserveWholeStockOfHotProductWhileLargerReservationsFail() throws Exception {
+        Product hotProduct = productService.getAll().stream()
+                                           .filter(product -> product.getName().equals("Product 2"))
+                                           .findFirst().get();
+        int stock = hotProduct.getQuantity();
+        stockLedger.markHot(hotProduct.getId());
+        TransactionTemplate rolledBack = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        AtomicBoolean done = new AtomicBoolean();
+
+        try {
+            List<Future<?>> largerReservations = new ArrayList<>();
+            for (int thread = 0; thread < 3; thread++) {
+                largerReservations.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        assertFalse(stockLedger.reserve(Collections.singletonMap(hotProduct.getId(), stock + 1)).isEmpty());
+                    }
+                }));
+            }
+
+            // the stock is spread over the stripes, so it is gathered from all of them every time
+            for (int attempt = 0; attempt < 2000; attempt++) {
+                List<Long> notInStockProductIds = rolledBack.execute(status -> {
+                    status.setRollbackOnly();
+                    return stockLedger.reserve(Collections.singletonMap(hotProduct.getId(), stock));
+                });
+                assertTrue(notInStockProductIds.isEmpty(), "Whole stock was not reserved in attempt " + attempt);
+            }
+
+            done.set(true);
+            for (Future<?> reservation : largerReservations) {
+                reservation.get();
+            }
+            assertEquals(stock, stockLedger.getAvailableStock(hotProduct.getId()));
+        } finally {
+            done.set(true);
+            executor.shutdown();
+            stockLedger.unmarkHot(hotProduct.getId());
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void rejectedOrderGivesStockOfHotProductBack() throws Exception {
+        List<Product> products = productService.getAll();
+        Product hotProduct = products.stream().filter(product -> product.getName().equals("Product 2")).findFirst().get();
+        mockStockSeenByValidator(products, 999);
+        stockLedger.markHot(hotProduct.getId());
+
+        Order order = createOrder();
+        order.getItems().stream()
+             .filter(item -> item.getProduct().getName().equals("Product 1"))
+             .forEach(item -> item.setQuantity(item.getProduct().getQuantity() + 1));
+
+        try {
+            mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                   .content(mapper.writeValueAsString(order))).andDo(print())
+                   .andExpect(status().isUnprocessableEntity());
+
+            assertEquals(2L, stockLedger.getAvailableStock(hotProduct.getId()));
+            assertEquals(0L, orderDao.count());
+        } finally {
+            Mockito.reset(productService);
+            stockLedger.unmarkHot(hotProduct.getId());
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void queuedOrdersArePlacedUntilStockRunsOut() throws Exception {
+        List<Product> products = productService.getAll();
+        Map<Long, Integer> stock = products.stream().collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        mockStockSeenByValidator(products, 999);
+
+        Order order = createOrder();
+        order.getItems().forEach(item -> item.setQuantity(item.getProduct().getQuantity()));
+        String[] locations = new String[2];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                  .header(OrderIntakeController.PREFER_HEADER, OrderIntakeController.RESPOND_ASYNC)
+                                  .content(mapper.writeValueAsString(order))).andDo(print())
+                                  .andExpect(status().isAccepted())
+                                  .andExpect(header().string(OrderIntakeController.PREFERENCE_APPLIED_HEADER,
+                                                             OrderIntakeController.RESPOND_ASYNC))
+                                  .andExpect(jsonPath("$.status").value("QUEUED"))
+                                  .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+        }
+
+        JsonNode placed = awaitOrderHandle(locations[0]);
+        try {
+            assertEquals("PLACED", placed.get("status").asText());
+            JsonNode rejected = awaitOrderHandle(locations[1]);
+            assertEquals("REJECTED", rejected.get("status").asText());
+            assertTrue(rejected.get("errors").get(0).get("field").asText().endsWith("].quantity"));
+
+            assertEquals(1L, orderDao.count());
+            stock.keySet().forEach(productId -> assertEquals(0, getQuantityInDatabase(productId)));
+
+            mockMvc.perform(get(locations[0]).with(user("manager@test.pl")))
+                   .andExpect(status().isNotFound());
+        } finally {
+            Mockito.reset(productService);
+            if (placed.hasNonNull("orderId")) {
+                orderDao.deleteById(placed.get("orderId").asLong());
+            }
+            restoreStockAndClearSales(stock);
+            cooccurrenceIndex.rebuild();
+        }
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void queuedOrderFailedByErrorDoesNotStopIntake() throws Exception {
+        Map<Long, Integer> stock = productService.getAll().stream()
+                                                 .collect(Collectors.toMap(Product::getId, Product::getQuantity));
+        Mockito.doThrow(new AssertionError("Broken order")).doCallRealMethod()
+               .when(orderService).place(Mockito.any(Order.class), Mockito.any(User.class));
+        try {
+            String[] locations = new String[2];
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                      .header(OrderIntakeController.PREFER_HEADER, OrderIntakeController.RESPOND_ASYNC)
+                                      .content(mapper.writeValueAsString(createOrder()))).andDo(print())
+                                      .andExpect(status().isAccepted())
+                                      .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+                awaitOrderHandle(locations[i]);
+            }
+
+            assertEquals("FAILED", awaitOrderHandle(locations[0]).get("status").asText());
+            assertEquals("PLACED", awaitOrderHandle(locations[1]).get("status").asText());
+            assertEquals(1L, orderDao.count());
+        } finally {
+            Mockito.reset(orderService);
+            orderDao.deleteAll();
+            restoreStockAndClearSales(stock);
+            cooccurrenceIndex.rebuild();
+        }
+    }
+
     @Test
     @WithUserDetails("user@test.pl")
     void addOrderWithNoDeliveryAddressReturnUnprocessableEntity() throws Exception {
@@ -246,6 +883,162 @@ class OrderControllerTests {
                .andExpect(jsonPath("$", hasSize(1)));
     }
 
+    @Test
+    @WithUserDetails("manager@test.pl")
+    void getOrdersPageReturnFilteredOrdersFromTheLatestOne() throws Exception {
+        User user = userDao.getUserByEmail("user@test.pl").get();
+        User manager = userDao.getUserByEmail("manager@test.pl").get();
+        OffsetDateTime now = OffsetDateTime.now();
+        Order oldOrder = saveOrder(user, PaymentMethod.BANK_TRANSFER, now.minusDays(2));
+        saveOrder(user, PaymentMethod.MONEY, now.minusDays(1));
+        Order newOrder = saveOrder(manager, PaymentMethod.BANK_TRANSFER, now);
+
+        mockMvc.perform(get("/api/orders").queryParam("paymentMethod", "BANK_TRANSFER").queryParam("size", "1"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(header().string(OrderController.TOTAL_COUNT_HEADER, "2"))
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(newOrder.getId()))
+               .andExpect(jsonPath("$[0].buyer.email").value("manager@test.pl"))
+               .andExpect(jsonPath("$[0].items", hasSize(2)));
+
+        mockMvc.perform(get("/api/orders").queryParam("paymentMethod", "BANK_TRANSFER").queryParam("size", "1")
+                                          .queryParam("page", "1"))
+               .andExpect(status().isOk())
+               .andExpect(header().string(OrderController.TOTAL_COUNT_HEADER, "2"))
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(oldOrder.getId()));
+
+        mockMvc.perform(get("/api/orders").queryParam("buyerId", String.valueOf(user.getId()))
+                                          .queryParam("to", now.minusHours(36).toString()))
+               .andExpect(status().isOk())
+               .andExpect(header().string(OrderController.TOTAL_COUNT_HEADER, "1"))
+               .andExpect(jsonPath("$[*].id", contains(oldOrder.getId().intValue())));
+    }
+
+    @Test
+    @WithUserDetails("manager@test.pl")
+    void getOrdersPageReturnOrdersSortedByGivenAttribute() throws Exception {
+        User user = userDao.getUserByEmail("user@test.pl").get();
+        Order firstOrder = saveOrder(user, PaymentMethod.MONEY, OffsetDateTime.now().minusDays(1));
+        Order secondOrder = saveOrder(user, PaymentMethod.MONEY, OffsetDateTime.now());
+
+        mockMvc.perform(get("/api/orders").queryParam("status", "CREATED").queryParam("sort", "TIME")
+                                          .queryParam("direction", "ASC"))
+               .andExpect(status().isOk())
+               .andExpect(header().string(OrderController.TOTAL_COUNT_HEADER, "2"))
+               .andExpect(jsonPath("$[*].id", contains(firstOrder.getId().intValue(), secondOrder.getId().intValue())));
+
+        mockMvc.perform(get("/api/orders").queryParam("status", "SENT"))
+               .andExpect(status().isOk())
+               .andExpect(header().string(OrderController.TOTAL_COUNT_HEADER, "0"))
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithUserDetails("manager@test.pl")
+    void getOrdersPageWithInvalidSizeReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/orders").queryParam("size", "0")).andDo(print())
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/orders").queryParam("size", "1000")).andDo(print())
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/orders").queryParam("page", "-1")).andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithUserDetails("manager@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void streamAllOrdersReturnOk() throws Exception {
+        Order order = createOrder();
+        order.setBuyer(userDao.getUserByEmail("user@test.pl").get());
+        orderDao.save(order);
+
+        try {
+            MvcResult result = mockMvc.perform(get("/api/orders").queryParam("stream", "true"))
+                                      .andExpect(request().asyncStarted())
+                                      .andReturn();
+
+            mockMvc.perform(asyncDispatch(result)).andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$", hasSize(1)))
+                   .andExpect(jsonPath("$[0].buyer.email").value("user@test.pl"))
+                   .andExpect(jsonPath("$[0].buyer.roles").doesNotExist())
+                   .andExpect(jsonPath("$[0].items", hasSize(2)))
+                   .andExpect(jsonPath("$[0].cost").value(11.98D));
+        } finally {
+            orderDao.delete(order);
+        }
+    }
+
+    @Test
+    @WithUserDetails("manager@test.pl")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void streamAllOrdersLoadsItemsOncePerChunk() throws Exception {
+        User buyer = userDao.getUserByEmail("user@test.pl").get();
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Order order = createOrder();
+            order.setBuyer(buyer);
+            orders.add(orderDao.save(order));
+        }
+
+        try {
+            RecordingStatementInspector.clear();
+            MvcResult result = mockMvc.perform(get("/api/orders").queryParam("stream", "true"))
+                                      .andExpect(request().asyncStarted())
+                                      .andReturn();
+
+            mockMvc.perform(asyncDispatch(result)).andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$", hasSize(3)))
+                   .andExpect(jsonPath("$[2].items", hasSize(2)))
+                   .andExpect(jsonPath("$[2].items[0].product.name").exists());
+            List<String> statements = RecordingStatementInspector.getStatements();
+
+            // ids of the orders and one chunk of them with buyers, items and products
+            assertEquals(2, statements.stream().filter(sql -> sql.startsWith("select")).count());
+        } finally {
+            orderDao.deleteAll(orders);
+        }
+    }
+
+    @Test
+    @WithUserDetails("manager@test.pl")
+    void getOrderSummariesReturnCostAndItemCount() throws Exception {
+        Order order = createOrder();
+        order.setBuyer(userDao.getUserByEmail("user@test.pl").get());
+        orderDao.save(order);
+
+        mockMvc.perform(get("/api/orders").queryParam("view", "summary")).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(order.getId()))
+               .andExpect(jsonPath("$[0].status").value("CREATED"))
+               .andExpect(jsonPath("$[0].time").exists())
+               .andExpect(jsonPath("$[0].cost").value(11.98D))
+               .andExpect(jsonPath("$[0].itemCount").value(2))
+               .andExpect(jsonPath("$[0].buyer").doesNotExist())
+               .andExpect(jsonPath("$[0].items").doesNotExist());
+    }
+
+    @Test
+    @WithUserDetails("user@test.pl")
+    void getOrderSummariesByCurrentUserReturnOnlyOwnOrders() throws Exception {
+        Order order = createOrder();
+        order.setBuyer(userDao.getUserByEmail("user@test.pl").get());
+        orderDao.save(order);
+        Order otherOrder = createOrder();
+        otherOrder.setBuyer(userDao.getUserByEmail("manager@test.pl").get());
+        orderDao.save(otherOrder);
+
+        mockMvc.perform(get("/api/orders/buyer").queryParam("view", "summary")).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].id").value(order.getId()))
+               .andExpect(jsonPath("$[0].itemCount").value(2));
+    }
+
     @Test
     @WithUserDetails("user@test.pl")
     void getAllOrdersWithoutPermissionReturnForbidden() throws Exception {
@@ -376,6 +1169,51 @@ class OrderControllerTests {
                .andExpect(jsonPath("$.status").value(OrderStatus.IN_PROGRESS.name()));
     }
 
+    @Test
+    @WithUserDetails("manager@test.pl")
+    void updateOrderStatusWithStaleVersionShouldReturnConflict() throws Exception {
+        String makeOrderResponse = mockMvc.perform(request.builder(HttpMethod.POST, "/api/orders")
+                                          .with(user("user@test.pl"))
+                                          .content(mapper.writeValueAsString(createOrder())))
+                                          .andExpect(status().isCreated())
+                                          .andReturn().getResponse().getContentAsString();
+
+        Order order = mapper.readValue(makeOrderResponse, Order.class);
+        order.setStatus(OrderStatus.IN_PROGRESS);
+        order.setVersion(order.getVersion() + 1);
+        mockMvc.perform(request.builder(HttpMethod.PATCH, "/api/orders")
+               .content(mapper.writeValueAsString(order)))
+               .andExpect(status().isConflict());
+
+        mockMvc.perform(get("/api/orders/{id}", order.getId()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.status").value(OrderStatus.CREATED.name()));
+    }
+
+    @Test
+    void conflictingUpdateShouldBeRetriedUpToMaxAttempts() {
+        Counter retried = meterRegistry.counter("entity.version.conflicts", "entity", "Order", "outcome", "retried");
+        Counter exhausted = meterRegistry.counter("entity.version.conflicts", "entity", "Order", "outcome", "exhausted");
+        double retriedBefore = retried.count();
+        double exhaustedBefore = exhausted.count();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryExecutor.executeWithRetry(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Order.class, 1L);
+            }
+            return "updated";
+        });
+
+        assertEquals("updated", result);
+        assertEquals(retriedBefore + 2, retried.count());
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> retryExecutor.executeWithRetry(() -> {
+            throw new ObjectOptimisticLockingFailureException(Order.class, 1L);
+        }));
+        assertEquals(retriedBefore + 4, retried.count());
+        assertEquals(exhaustedBefore + 1, exhausted.count());
+    }
+
     @Test
     @WithUserDetails("user@test.pl")
     void updateOrderStatusWithoutAuthorizationShouldReturnForbidden() throws Exception {
@@ -1,39 +1,76 @@
 package pl.onlinestore;
 
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.math.BigDecimal;
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import pl.onlinestore.catalog.ProductChangedEvent;
+import pl.onlinestore.catalog.ProductPriceIndex;
+import pl.onlinestore.catalog.ProductSuggestIndex;
+import pl.onlinestore.catalog.ProductTextIndex;
+import pl.onlinestore.catalog.ProductsImportedEvent;
 import pl.onlinestore.configuration.CustomRequest;
+import pl.onlinestore.controller.ProductController;
 import pl.onlinestore.dao.ProductDao;
 import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.service.ProductService;
+import pl.onlinestore.util.ProductSuggestion;
 
 @SpringBootTest
 @ComponentScan
@@ -41,6 +78,7 @@ import pl.onlinestore.model.Product;
 @AutoConfigureMockMvc
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @Transactional
+@RecordApplicationEvents
 class ProductControllerTests {
 
     @Autowired
@@ -49,12 +87,36 @@ class ProductControllerTests {
     @Autowired
     private ProductDao productDao;
 
+    @Autowired
+    private ProductService productService;
+
     @Autowired
     private ObjectMapper mapper;
 
     @Autowired
     private CustomRequest request;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ProductSuggestIndex suggestIndex;
+
+    @Autowired
+    private ProductPriceIndex priceIndex;
+
+    @Autowired
+    private ProductTextIndex textIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents applicationEvents;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @BeforeAll
     void init() {
         List<Product> products = Arrays.asList(
@@ -182,6 +244,91 @@ class ProductControllerTests {
                .andExpect(status().isForbidden());
     }
 
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void importProductsFromNdjsonReturnRowErrors() throws Exception {
+        String body = String.join("\n",
+            "{\"name\":\"Rice\",\"description\":\"1kg of rice.\",\"images\":[\"/riceimageurl\"],\"price\":3.49,\"quantity\":25}",
+            "{\"name\":\"Pasta\",\"images\":[\"/pastaimageurl\"],\"price\":-2.00,\"quantity\":30}",
+            "{\"name\":\"Flour\",\"images\":[\"/flourimageurl\"],\"price\":\"cheap\",\"quantity\":12}",
+            "{\"name\":\"Oats\",\"images\":[\"/oatsimageurl\"],\"price\":5.29,\"quantity\":0}");
+
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/products/import")
+                               .contentType("application/x-ndjson").content(body))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.imported").value(2))
+               .andExpect(jsonPath("$.rejected").value(2))
+               .andExpect(jsonPath("$.errors[0].row").value(2))
+               .andExpect(jsonPath("$.errors[0].field").value("price"))
+               .andExpect(jsonPath("$.errors[1].row").value(3))
+               .andExpect(jsonPath("$.errors[1].field").value("price"));
+
+        List<String> names = new ArrayList<>();
+        productDao.findAll().forEach(product -> names.add(product.getName()));
+        assertTrue(names.containsAll(Arrays.asList("Rice", "Oats")));
+        assertFalse(names.contains("Pasta") || names.contains("Flour"));
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void importProductsFromCsvReturnOk() throws Exception {
+        String body = String.join("\n",
+                                  "name,description,images,price,quantity",
+                                  "Jam,\"A jar of jam, strawberry.\",/jamimageurl;/jamimageurl2,8.99,14",
+                                  "Tuna,A can of tuna.,/tunaimageurl,6.19,40");
+
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/products/import").contentType("text/csv").content(body))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.imported").value(2))
+               .andExpect(jsonPath("$.errors", hasSize(0)));
+
+        Product jam = productDao.findAll((root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("name"), "Jam"))
+                                .get(0);
+        assertEquals("A jar of jam, strawberry.", jam.getDescription());
+        assertEquals(2, jam.getImages().size());
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void importProductsUpdatesIndexesOncePerChunk() throws Exception {
+        String body = String.join("\n",
+                                  "name,description,images,price,quantity",
+                                  "Honey,A jar of honey.,/honeyimageurl,12.99,7",
+                                  "Hazelnuts,200g of hazelnuts.,/hazelnutsimageurl,9.49,11");
+
+        try {
+            mockMvc.perform(request.builder(HttpMethod.POST, "/api/products/import").contentType("text/csv").content(body))
+                   .andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.imported").value(2));
+
+            assertEquals(0, applicationEvents.stream(ProductChangedEvent.class).count());
+            assertEquals(1, applicationEvents.stream(ProductsImportedEvent.class).count());
+            mockMvc.perform(get("/api/products").queryParam("priceGreaterThan", "9.00")
+                                                .queryParam("priceLessThan", "13.00"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].name", containsInAnyOrder("Ham", "Honey", "Hazelnuts")));
+            assertEquals(Arrays.asList("Hazelnuts", "Honey"),
+                         suggestIndex.suggest("h", 10).stream().map(ProductSuggestion::getName)
+                                     .filter(name -> !name.equals("Ham")).collect(Collectors.toList()));
+        } finally {
+            productDao.findAll((root, query, criteriaBuilder) -> root.get("name").in("Honey", "Hazelnuts"))
+                      .forEach(productDao::delete);
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void importProductsByNonManagerReturnForbidden() throws Exception {
+        mockMvc.perform(request.builder(HttpMethod.POST, "/api/products/import").contentType("text/csv")
+                               .content("name,price,quantity\nSalt,1.49,5"))
+               .andDo(print())
+               .andExpect(status().isForbidden());
+    }
+
     @Test
     @WithMockUser
     void getProductByValidIdReturnOk() throws Exception {
@@ -192,6 +339,150 @@ class ProductControllerTests {
                .andExpect(jsonPath("$.id").value(id));
     }
 
+    @Test
+    @WithMockUser
+    void getProductRepeatedlyIsServedFromCache() throws Exception {
+        Counter cacheHits = meterRegistry.counter("product.cache.requests", "result", "hit");
+        mockMvc.perform(get("/api/products/{id}", 2L)).andExpect(status().isOk());
+        double hitsBefore = cacheHits.count();
+
+        mockMvc.perform(get("/api/products/{id}", 2L)).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.id").value(2L));
+
+        assertEquals(hitsBefore + 1, cacheHits.count());
+    }
+
+    @Test
+    void productsServedFromCacheAreDetachedCopies() {
+        productService.getById(2L);
+
+        Product first = productService.getById(2L);
+        first.setName("Changed name");
+        Product second = productService.getById(2L);
+
+        assertNotSame(first, second);
+        assertEquals("Bread", second.getName());
+        assertFalse(entityManager.contains(second));
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void deleteProductChangedSinceItWasCachedReturnNoContent() throws Exception {
+        mockMvc.perform(get("/api/products/{id}", 3L)).andExpect(status().isOk());
+        entityManager.flush();
+        entityManager.createNativeQuery("UPDATE product SET version = version + 1 WHERE id = 3").executeUpdate();
+        entityManager.clear();
+
+        mockMvc.perform(request.builder(HttpMethod.DELETE, "/api/products/{id}", 3L)).andDo(print())
+               .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @WithMockUser
+    void getProductBatchReturnProductsInRequestedOrderAndMissingIds() throws Exception {
+        mockMvc.perform(get("/api/products/batch").queryParam("ids", "3,1,999,3")).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.products[*].id", contains(3, 1)))
+               .andExpect(jsonPath("$.products[0].name").value("Ham"))
+               .andExpect(jsonPath("$.missingIds", contains(999)));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductBatchWithTooManyIdsReturnBadRequest() throws Exception {
+        String ids = LongStream.rangeClosed(1, 101).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        mockMvc.perform(get("/api/products/batch").queryParam("ids", ids)).andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void getProductAfterUpdateReturnUpdatedProduct() throws Exception {
+        String productJson = mockMvc.perform(get("/api/products/{id}", 3L))
+                                    .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Product product = mapper.readValue(productJson, Product.class);
+        product.setPrice(BigDecimal.valueOf(12.49D));
+
+        mockMvc.perform(request.builder(HttpMethod.PUT, "/api/products")
+               .content(mapper.writeValueAsString(product)))
+               .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/products/{id}", 3L)).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.price").value(product.getPrice()));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsWithCurrentETagReturnNotModified() throws Exception {
+        String eTag = mockMvc.perform(get("/api/products")).andExpect(status().isOk())
+                             .andExpect(header().exists(HttpHeaders.ETAG))
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, eTag)).andDo(print())
+               .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/products/{id}", 2L).header(HttpHeaders.IF_NONE_MATCH, eTag)).andDo(print())
+               .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @WithMockUser
+    void getInvalidOrMissingProductsWithCurrentETagReturnError() throws Exception {
+        String eTag = mockMvc.perform(get("/api/products")).andExpect(status().isOk())
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/products").queryParam("limit", "0").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products").queryParam("after", "%%%").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products/batch").queryParam("ids", "").header(HttpHeaders.IF_NONE_MATCH, eTag))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/products/{id}", 999L).header(HttpHeaders.IF_NONE_MATCH, eTag)).andDo(print())
+               .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void getProductsWithETagIssuedBeforeCatalogChangeReturnOk() throws Exception {
+        String eTag = mockMvc.perform(get("/api/products")).andExpect(status().isOk())
+                             .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Product product = new Product("Temporary", "Temporary product", Collections.singleton("/tempimageurl"),
+                                      BigDecimal.valueOf(99.99D), 1);
+        String productJson = mockMvc.perform(request.builder(HttpMethod.POST, "/api/products")
+                                    .content(mapper.writeValueAsString(product)))
+                                    .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+        mockMvc.perform(request.builder(HttpMethod.DELETE, "/api/products/{id}",
+                                        mapper.readValue(productJson, Product.class).getId()))
+               .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/products").header(HttpHeaders.IF_NONE_MATCH, eTag)).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
+
+    @Test
+    @WithMockUser
+    void streamProductsReturnAllProductsOrderedById() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/products").queryParam("stream", "true"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        List<Long> ids = new ArrayList<>();
+        productDao.findAll().forEach(product -> ids.add(product.getId()));
+        ids.sort(Comparator.naturalOrder());
+
+        mockMvc.perform(asyncDispatch(result)).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].id", contains(ids.stream().map(Long::intValue).toArray())))
+               .andExpect(jsonPath("$[0].images").isArray());
+    }
+
     @Test
     @WithMockUser
     void getProductByInvalidIdReturnNotFound() throws Exception {
@@ -217,6 +508,315 @@ class ProductControllerTests {
                              new SimpleImmutableEntry<>("priceEqualTo", "7.29"));
     }
 
+    @ParameterizedTest
+    @WithMockUser
+    @MethodSource("getNotMatchingRequestParams")
+    void getProductsFilteredByNotMatchingPredicatesReturnEmptyList(SimpleImmutableEntry<String, String> param)
+        throws Exception {
+        mockMvc.perform(get("/api/products").queryParam(param.getKey(), param.getValue()))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    private static List<SimpleImmutableEntry<String, String>> getNotMatchingRequestParams() {
+        return Arrays.asList(new SimpleImmutableEntry<>("nameContains", "milk"),
+                             new SimpleImmutableEntry<>("nameContains", "%"),
+                             new SimpleImmutableEntry<>("nameContains", "M_lk"),
+                             new SimpleImmutableEntry<>("descContains", "carton of bread"));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsFilteredByShortNameFragmentReturnOk() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("nameContains", "ff"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].name").value("Coffee"));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsFilteredByPriceRangeAndNameReturnOk() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("priceGreaterThan", "4.985")
+                                            .queryParam("priceLessThan", "10.501")
+                                            .queryParam("nameContains", "u"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].name").value("Butter"));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsFilteredByPriceWithMoreThanTwoDecimalPlacesReturnEmptyList() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "7.295"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsFilteredByPriceOutOfRangeOfCentsReturnOk() throws Exception {
+        long productCount = productDao.count();
+
+        mockMvc.perform(get("/api/products").queryParam("priceGreaterThan", "1E20"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/api/products").queryParam("priceLessThan", "1E20"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize((int) productCount)));
+        mockMvc.perform(get("/api/products").queryParam("priceGreaterThan", "-1E20"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize((int) productCount)));
+        mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "1E20"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsPageWithFacetsReturnFacetsOfAllMatchingProducts() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("priceLessThan", "11")
+                                            .queryParam("limit", "1")
+                                            .queryParam("facets", "true"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.products", hasSize(1)))
+               .andExpect(jsonPath("$.facets.minPrice").value(2.79D))
+               .andExpect(jsonPath("$.facets.maxPrice").value(10.50D))
+               .andExpect(jsonPath("$.facets.inStock").value(4))
+               .andExpect(jsonPath("$.facets.outOfStock").value(0))
+               .andExpect(jsonPath("$.facets.priceHistogram[0].from").value(2.79D))
+               .andExpect(jsonPath("$.facets.priceHistogram[0].count").value(1))
+               .andExpect(jsonPath("$.facets.priceHistogram[*].count", everyItem(lessThanOrEqualTo(4))));
+    }
+
+    @Test
+    @WithMockUser
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void searchProductsWithFacetsCountOutOfStockProducts() throws Exception {
+        Product product = productDao.save(new Product("Salt", "1kg of salt.", Collections.singleton("/saltimageurl"),
+                                                      BigDecimal.valueOf(1.49D), 0));
+        try {
+            mockMvc.perform(get("/api/products").queryParam("q", "of").queryParam("facets", "true"))
+                   .andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.products", hasSize(6)))
+                   .andExpect(jsonPath("$.facets.minPrice").value(1.49D))
+                   .andExpect(jsonPath("$.facets.inStock").value(5))
+                   .andExpect(jsonPath("$.facets.outOfStock").value(1));
+        } finally {
+            productDao.delete(product);
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void searchProductsReturnMostRelevantFirst() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("q", "MILK"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].name").value("Milk"));
+
+        mockMvc.perform(get("/api/products").queryParam("q", "packet of coffee"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].name").value("Coffee"));
+    }
+
+    @Test
+    @WithMockUser
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void searchProductsIgnoreDiacritics() throws Exception {
+        Product product = productDao.save(new Product("Żółta herbata", "Herbata z Łodzi.",
+                                                      Collections.singleton("/teaimageurl"), BigDecimal.TEN, 5));
+        try {
+            mockMvc.perform(get("/api/products").queryParam("q", "zolta lodzi"))
+                   .andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$", hasSize(1)))
+                   .andExpect(jsonPath("$[0].name").value("Żółta herbata"));
+        } finally {
+            productDao.delete(product);
+        }
+
+        mockMvc.perform(get("/api/products").queryParam("q", "zolta"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser
+    void searchProductsFilteredByPriceReturnOk() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("q", "of").queryParam("priceLessThan", "5.00"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsSummaryReturnOnlyCardAttributes() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("priceLessThan", "5").queryParam("view", "summary"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(2)))
+               .andExpect(jsonPath("$[*].name", containsInAnyOrder("Milk", "Bread")))
+               .andExpect(jsonPath("$[?(@.name == 'Milk')].image").value("/milkimageurl"))
+               .andExpect(jsonPath("$[?(@.name == 'Milk')].price").value(4.99D))
+               .andExpect(jsonPath("$[0].description").doesNotExist())
+               .andExpect(jsonPath("$[0].images").doesNotExist())
+               .andExpect(jsonPath("$[0].quantity").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsSummaryPageAndSearchKeepOrder() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("sort", "PRICE")
+                                            .queryParam("limit", "2")
+                                            .queryParam("view", "SUMMARY"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(header().exists(ProductController.NEXT_CURSOR_HEADER))
+               .andExpect(jsonPath("$[*].name", contains("Bread", "Milk")));
+
+        mockMvc.perform(get("/api/products").queryParam("q", "packet of coffee").queryParam("view", "summary"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(1)))
+               .andExpect(jsonPath("$[0].name").value("Coffee"))
+               .andExpect(jsonPath("$[0].image").value("/coffeeimageurl"));
+    }
+
+    @Test
+    @WithMockUser
+    void suggestProductsReturnNamesStartingWithPrefix() throws Exception {
+        mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "B"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].name", contains("Bread", "Butter")))
+               .andExpect(jsonPath("$[0].id").isNumber());
+
+        mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "b").queryParam("limit", "1"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].name", contains("Bread")));
+
+        mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "xyz"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void suggestProductsIgnoreDiacriticsAndFollowChanges() throws Exception {
+        Product product = productDao.save(new Product("\u017b\u00f3\u0142ta kawa ziarnista", "1kg of coffee beans.",
+                                                      Collections.singleton("/beansimageurl"), BigDecimal.valueOf(59.99D),
+                                                      3));
+        try {
+            for (String prefix : Arrays.asList("zolta", "KAWA", "ziar", "\u017c\u00f3\u0142ta kawa")) {
+                mockMvc.perform(get("/api/products/suggest").queryParam("prefix", prefix))
+                       .andDo(print())
+                       .andExpect(status().isOk())
+                       .andExpect(jsonPath("$", hasSize(1)))
+                       .andExpect(jsonPath("$[0].id").value(product.getId()));
+            }
+        } finally {
+            productDao.delete(product);
+        }
+
+        mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "kawa"))
+               .andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void priceAndNameIndexesFollowChangesOfProduct() throws Exception {
+        Product product = productDao.save(new Product("Oat flakes", "500g of oat flakes.",
+                                                      Collections.singleton("/oatsimageurl"), BigDecimal.valueOf(3.49D),
+                                                      9));
+        try {
+            product.setQuantity(8);
+            product = productDao.save(product);
+            mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "3.49"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(product.getId().intValue())));
+            mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "oat"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(product.getId().intValue())));
+
+            product.setName("Rye flakes");
+            product.setPrice(BigDecimal.valueOf(3.99D));
+            product = productDao.save(product);
+            mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "3.49"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$", hasSize(0)));
+            mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "3.99"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(product.getId().intValue())));
+            mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "oat"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$", hasSize(0)));
+            mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "rye"))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(product.getId().intValue())));
+        } finally {
+            productDao.delete(product);
+        }
+    }
+
+    @Test
+    @WithMockUser
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void getProductsWithIdBeyondIntRangeReturnOk() throws Exception {
+        long id = Integer.MAX_VALUE + 1L;
+        jdbcTemplate.update("INSERT INTO product (id, name, description, price, quantity) VALUES (?, ?, ?, ?, ?)",
+                            id, "Rice", "1kg of rice.", BigDecimal.valueOf(5.49D), 14);
+        priceIndex.rebuild();
+        textIndex.rebuild();
+        try {
+            mockMvc.perform(get("/api/products").queryParam("priceEqualTo", "5.49").queryParam("nameContains", "Rice"))
+                   .andDo(print())
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$[*].id", contains(id)));
+        } finally {
+            jdbcTemplate.update("DELETE FROM product WHERE id = ?", id);
+            priceIndex.rebuild();
+            textIndex.rebuild();
+        }
+    }
+
+    @Test
+    @WithMockUser
+    void suggestProductsWithInvalidLimitReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/products/suggest").queryParam("prefix", "b").queryParam("limit", "0"))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void searchProductsWithCursorReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("q", "milk").queryParam("after", "SUQ6MQ"))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser
     void getProductsFilteredByCustomPredicateWithWrongValueReturnBadRequest() throws Exception {
@@ -225,6 +825,62 @@ class ProductControllerTests {
                .andExpect(status().isBadRequest());
     }
 
+    @ParameterizedTest
+    @WithMockUser
+    @EnumSource(ProductSort.class)
+    void getProductsPageByPageReturnsWholeListingInOrder(ProductSort sort) throws Exception {
+        String allProductsJson = mockMvc.perform(get("/api/products")).andExpect(status().isOk())
+                                        .andReturn().getResponse().getContentAsString();
+        int productCount = mapper.readValue(allProductsJson, Product[].class).length;
+
+        List<Product> pagedProducts = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder pageRequest = get("/api/products").queryParam("limit", "2")
+                                                                            .queryParam("sort", sort.name());
+            if (cursor != null) {
+                pageRequest.queryParam("after", cursor);
+            }
+
+            MockHttpServletResponse response = mockMvc.perform(pageRequest).andDo(print())
+                                                      .andExpect(status().isOk())
+                                                      .andExpect(jsonPath("$", hasSize(lessThanOrEqualTo(2))))
+                                                      .andReturn().getResponse();
+            pagedProducts.addAll(Arrays.asList(mapper.readValue(response.getContentAsString(), Product[].class)));
+            cursor = response.getHeader(ProductController.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+
+        Comparator<Product> comparator = sort == ProductSort.PRICE ? Comparator.comparing(Product::getPrice)
+                                                                   : sort == ProductSort.NAME ? Comparator.comparing(Product::getName)
+                                                                                              : Comparator.comparing(Product::getId);
+        List<Product> sortedProducts = new ArrayList<>(pagedProducts);
+        sortedProducts.sort(comparator.thenComparing(Product::getId));
+
+        assertEquals(productCount, pagedProducts.size());
+        assertEquals(productCount, pagedProducts.stream().map(Product::getId).distinct().count());
+        assertEquals(sortedProducts, pagedProducts);
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsPageWithMalformedCursorReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/products").queryParam("after", "not-a-cursor"))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void getProductsPageWithCursorOfOtherSortReturnBadRequest() throws Exception {
+        String cursor = mockMvc.perform(get("/api/products").queryParam("limit", "1").queryParam("sort", "PRICE"))
+                               .andExpect(status().isOk())
+                               .andReturn().getResponse().getHeader(ProductController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/api/products").queryParam("after", cursor).queryParam("sort", "NAME"))
+               .andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(roles = "MANAGER")
     void updateProductReturnOk() throws Exception {
@@ -244,6 +900,43 @@ class ProductControllerTests {
                .andExpect(jsonPath("$.price").value(product.getPrice()));
     }
 
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void updateProductWithoutVersionReturnBadRequest() throws Exception {
+        String productJson = mockMvc.perform(get("/api/products/1"))
+                                    .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Product product = mapper.readValue(productJson, Product.class);
+        product.setName("Updated product");
+        product.setVersion(null);
+
+        mockMvc.perform(request.builder(HttpMethod.PUT, "/api/products")
+               .content(mapper.writeValueAsString(product))).andDo(print())
+               .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void updateProductWithStaleVersionReturnConflict() throws Exception {
+        String productJson = mockMvc.perform(get("/api/products/1"))
+                                    .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        Product product = mapper.readValue(productJson, Product.class);
+        Counter conflicts = meterRegistry.counter("entity.version.conflicts", "entity", "Product", "outcome", "rejected");
+        double conflictsBefore = conflicts.count();
+
+        product.setName("Updated product");
+        mockMvc.perform(request.builder(HttpMethod.PUT, "/api/products")
+               .content(mapper.writeValueAsString(product))).andDo(print())
+               .andExpect(status().isOk());
+        entityManager.flush();
+
+        product.setName("Concurrently updated product");
+        mockMvc.perform(request.builder(HttpMethod.PUT, "/api/products")
+               .content(mapper.writeValueAsString(product))).andDo(print())
+               .andExpect(status().isConflict());
+
+        assertEquals(conflictsBefore + 1, conflicts.count());
+    }
+
     @Test
     @WithMockUser(roles = "MANAGER")
     void updateProductWithInvalidIdReturnNotFound() throws Exception {
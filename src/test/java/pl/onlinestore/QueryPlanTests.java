@@ -0,0 +1,151 @@
+package pl.onlinestore;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import pl.onlinestore.configuration.RecordingStatementInspector;
+import pl.onlinestore.dao.OrderDao;
+import pl.onlinestore.dao.ProductDao;
+import pl.onlinestore.dao.UserDao;
+import pl.onlinestore.model.Product;
+import pl.onlinestore.model.enums.OrderSort;
+import pl.onlinestore.model.enums.OrderStatus;
+import pl.onlinestore.model.enums.PaymentMethod;
+import pl.onlinestore.model.enums.ProductSort;
+import pl.onlinestore.util.OrderFilter;
+import pl.onlinestore.util.ProductCursor;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                             + "pl.onlinestore.configuration.RecordingStatementInspector")
+@ComponentScan
+@AutoConfigureTestDatabase
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Transactional
+class QueryPlanTests {
+
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductDao productDao;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private OrderDao orderDao;
+
+    /**
+     * Runs the query and checks that none of its statements scans a whole table, unless the reason of a full scan is
+     * given, as for the queries reading all rows of a table anyway.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("getDaoQueries")
+    void daoQueryDoesNotScanWholeTable(String queryName, String fullScanReason, Runnable query) {
+        RecordingStatementInspector.clear();
+        query.run();
+
+        List<String> statements = RecordingStatementInspector.getStatements();
+        assertFalse(statements.isEmpty(), queryName + " did not execute any statement");
+        if (fullScanReason != null) {
+            return;
+        }
+
+        for (String statement : statements) {
+            String plan = jdbcTemplate.query(connection -> connection.prepareStatement("EXPLAIN " + statement),
+                                             resultSet -> resultSet.next() ? resultSet.getString(1) : "");
+            assertFalse(plan.contains(TABLE_SCAN), () -> queryName + " scans a whole table:\n" + plan);
+        }
+    }
+
+    /**
+     * Every query of the DAOs, except ProductDao.decrementStock and incrementStock, which update rows by their primary
+     * key through plain JDBC and so are not seen by the statement inspector.
+     */
+    private List<Arguments> getDaoQueries() {
+        Specification<Product> cheaperThanTen = (root, query, criteriaBuilder) ->
+            criteriaBuilder.lessThan(root.get("price"), BigDecimal.TEN);
+
+        return Arrays.asList(
+            indexed("UserDao.getUserByEmail", () -> userDao.getUserByEmail("john.smith@myemail.com")),
+            indexed("UserDao.findById", () -> userDao.findById(1L)),
+            fullScan("UserDao.findAll", "lists all users", () -> userDao.findAll()),
+            indexed("UserDao.findAllById", () -> userDao.findAllById(Arrays.asList(1L, 2L))),
+            fullScan("UserDao.streamAllIds", "streams all users", () -> consume(userDao.streamAllIds())),
+            indexed("OrderDao.findById", () -> orderDao.findById(1L)),
+            indexed("OrderDao.getOrdersByBuyerId", () -> orderDao.getOrdersByBuyerId(1L)),
+            indexed("OrderDao.findAllById", () -> orderDao.findAllById(Arrays.asList(1L, 2L))),
+            indexed("OrderDao.findByIdIn", () -> orderDao.findByIdIn(Arrays.asList(1L, 2L))),
+            fullScan("OrderDao.findAll", "lists all orders", () -> orderDao.findAll()),
+            fullScan("OrderDao.findAllSummaries", "sums up all orders", () -> orderDao.findAllSummaries()),
+            indexed("OrderDao.findSummariesByBuyerId", () -> orderDao.findSummariesByBuyerId(1L)),
+            fullScan("OrderDao.streamProductIdsOfAllOrders",
+                     "rebuilds the index of products bought together from all orders",
+                     () -> consume(orderDao.streamProductIdsOfAllOrders())),
+            fullScan("OrderDao.streamAllIds", "streams all orders", () -> consume(orderDao.streamAllIds())),
+            indexed("OrderDao.findIds sorted by time", () -> orderDao.findIds(
+                null, OrderSort.TIME, Sort.Direction.ASC, 0, 10)),
+            fullScan("OrderDao.findIds sorted by time descending",
+                     "H2 does not read an index backwards, unlike PostgreSQL with transaction_time_id_idx",
+                     () -> orderDao.findIds(null, OrderSort.TIME, Sort.Direction.DESC, 0, 10)),
+            indexed("OrderDao.findIds by status", () -> orderDao.findIds(
+                new OrderFilter(OrderStatus.CREATED, null, null, null, null).toSpecification(), OrderSort.TIME,
+                Sort.Direction.DESC, 0, 10)),
+            indexed("OrderDao.findIds by buyer", () -> orderDao.findIds(
+                new OrderFilter(null, null, null, 1L, null).toSpecification(), OrderSort.TIME, Sort.Direction.DESC, 0,
+                10)),
+            indexed("OrderDao.findIds by payment method", () -> orderDao.findIds(
+                new OrderFilter(null, null, null, null, PaymentMethod.MONEY).toSpecification(), OrderSort.TIME,
+                Sort.Direction.DESC, 0, 10)),
+            indexed("OrderDao.findIds sorted by total", () -> orderDao.findIds(
+                null, OrderSort.TOTAL, Sort.Direction.ASC, 0, 10)),
+            indexed("OrderDao.findIds sorted by id", () -> orderDao.findIds(
+                null, OrderSort.ID, Sort.Direction.ASC, 0, 10)),
+            indexed("ProductDao.findById", () -> productDao.findById(1L)),
+            indexed("ProductDao.findAllById", () -> productDao.findAllById(Arrays.asList(1L, 2L))),
+            fullScan("ProductDao.findAll", "lists all products", () -> productDao.findAll()),
+            fullScan("ProductDao.streamAllIds", "streams all products", () -> consume(productDao.streamAllIds())),
+            indexed("ProductDao.findAll by price", () -> productDao.findAll(cheaperThanTen)),
+            indexed("ProductDao.findIdsAfter by id", () -> productDao.findIdsAfter(
+                null, ProductSort.ID, ProductCursor.after(1L, null, null, ProductSort.ID), 10)),
+            indexed("ProductDao.findIdsAfter by price", () -> productDao.findIdsAfter(
+                null, ProductSort.PRICE, ProductCursor.after(1L, BigDecimal.ONE, null, ProductSort.PRICE), 10)),
+            indexed("ProductDao.findIdsAfter by name", () -> productDao.findIdsAfter(
+                null, ProductSort.NAME, ProductCursor.after(1L, null, "Milk", ProductSort.NAME), 10)),
+            indexed("ProductDao.findCards by price", () -> productDao.findCards(cheaperThanTen)),
+            fullScan("ProductDao.findCards", "lists cards of all products", () -> productDao.findCards(null)),
+            indexed("ProductDao.countFacets by price", () -> productDao.countFacets(cheaperThanTen)),
+            fullScan("ProductDao.countFacets", "counts facets of all products", () -> productDao.countFacets(null)));
+    }
+
+    private static Arguments indexed(String queryName, Runnable query) {
+        return Arguments.of(queryName, null, query);
+    }
+
+    private static Arguments fullScan(String queryName, String reason, Runnable query) {
+        return Arguments.of(queryName, reason, query);
+    }
+
+    private static void consume(Stream<?> stream) {
+        try (Stream<?> closed = stream) {
+            closed.count();
+        }
+    }
+}
@@ -4,20 +4,24 @@ import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.anonymous;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.Collections;
+import java.util.List;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -32,8 +36,10 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import pl.onlinestore.configuration.CustomRequest;
+import pl.onlinestore.configuration.RecordingStatementInspector;
 import pl.onlinestore.dao.UserDao;
 import pl.onlinestore.model.Address;
 import pl.onlinestore.model.User;
@@ -42,7 +48,8 @@ import pl.onlinestore.service.UserService;
 import pl.onlinestore.util.JsonViews.UserDetailed;
 import pl.onlinestore.util.JsonViews.UserSimple;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                             + "pl.onlinestore.configuration.RecordingStatementInspector")
 @ComponentScan
 @AutoConfigureTestDatabase
 @AutoConfigureMockMvc
@@ -173,6 +180,38 @@ class UserControllerTests {
                .andExpect(jsonPath("$", hasSize(greaterThanOrEqualTo(2))));
     }
 
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void streamAllUsersReturnOk() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/users").queryParam("stream", "true"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$", hasSize(greaterThanOrEqualTo(2))))
+               .andExpect(jsonPath("$[0].email").value("user@test.pl"))
+               .andExpect(jsonPath("$[0].roles").isArray())
+               .andExpect(jsonPath("$[0].password").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void streamAllUsersLoadsRolesOncePerChunk() throws Exception {
+        RecordingStatementInspector.clear();
+        MvcResult result = mockMvc.perform(get("/api/users").queryParam("stream", "true"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andDo(print())
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[1].roles").isArray());
+        List<String> statements = RecordingStatementInspector.getStatements();
+
+        // ids of the users and one chunk of them with their roles
+        assertEquals(2, statements.stream().filter(sql -> sql.startsWith("select")).count());
+    }
+
     @Test
     @WithMockUser
     void getAllUsersWithoutPermissionReturnForbidden() throws Exception {
@@ -0,0 +1,26 @@
+package pl.onlinestore.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final List<String> statements = new ArrayList<>();
+
+    public static synchronized void clear() {
+        statements.clear();
+    }
+
+    public static synchronized List<String> getStatements() {
+        return new ArrayList<>(statements);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        synchronized (RecordingStatementInspector.class) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}